@@ -0,0 +1,26 @@
+package io.github.yufeixuan.benchmarks;
+
+import org.openjdk.jmh.Main;
+
+import java.util.*;
+
+/**
+ * 运行JMH，未指定-rf/-rff时默认输出JSON结果到target/jmh-result.json，用于对比不同版本的性能
+ */
+public final class BenchmarkMain {
+    private BenchmarkMain() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final List<String> options = new ArrayList<>(Arrays.asList(args));
+        if (!options.contains("-rf")) {
+            options.add(0, "-rf");
+            options.add(1, "json");
+        }
+        if (!options.contains("-rff")) {
+            options.add(0, "-rff");
+            options.add(1, "target/jmh-result.json");
+        }
+        Main.main(options.toArray(new String[0]));
+    }
+}
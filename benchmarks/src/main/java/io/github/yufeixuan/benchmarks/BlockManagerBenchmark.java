@@ -0,0 +1,101 @@
+package io.github.yufeixuan.benchmarks;
+
+import io.github.yufeixuan.impl.BlockManager;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BlockManager按列、按行读写的性能测试
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class BlockManagerBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Blocks {
+        @Param({"10000", "100000", "1000000"})
+        public int rows;
+
+        @Param({"NARROW", "WIDE"})
+        public Frames.Shape shape;
+
+        BlockManager<Object> data;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            data = new BlockManager<>(Frames.frame(rows, shape, Frames.Kind.NUMERIC, 1L).getBlocks());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Copy {
+        BlockManager<Object> data;
+
+        @Setup(Level.Invocation)
+        public void setup(final Blocks blocks) {
+            data = blocks.data.snapshot();
+            data.getBlocks();
+        }
+    }
+
+    @Benchmark
+    public void getColumnMajor(final Blocks blocks, final Blackhole bh) {
+        final BlockManager<Object> data = blocks.data;
+        final int cols = data.size();
+        final int len = data.length();
+        for (int c = 0; c < cols; c++) {
+            for (int r = 0; r < len; r++) {
+                bh.consume(data.get(c, r));
+            }
+        }
+    }
+
+    @Benchmark
+    public void getRowMajor(final Blocks blocks, final Blackhole bh) {
+        final BlockManager<Object> data = blocks.data;
+        final int cols = data.size();
+        final int len = data.length();
+        for (int r = 0; r < len; r++) {
+            for (int c = 0; c < cols; c++) {
+                bh.consume(data.get(c, r));
+            }
+        }
+    }
+
+    @Benchmark
+    public void row(final Blocks blocks, final Blackhole bh) {
+        final int len = blocks.data.length();
+        for (int r = 0; r < len; r++) {
+            bh.consume(blocks.data.row(r));
+        }
+    }
+
+    @Benchmark
+    public void set(final Copy copy) {
+        final int len = copy.data.length();
+        for (int r = 0; r < len; r++) {
+            copy.data.set(r, 0, r);
+        }
+    }
+
+    @Benchmark
+    public BlockManager<Object> reshape(final Blocks blocks) {
+        final BlockManager<Object> data = new BlockManager<>();
+        final int cols = blocks.data.size();
+        for (int r = 1; r <= blocks.rows; r++) {
+            data.reshape(cols, r);
+        }
+        return data;
+    }
+
+    @Benchmark
+    public BlockManager<Object> snapshot(final Blocks blocks) {
+        return blocks.data.snapshot();
+    }
+}
@@ -0,0 +1,275 @@
+package io.github.yufeixuan.benchmarks;
+
+import io.github.yufeixuan.DataFrame;
+import io.github.yufeixuan.DataFrame.Aggregation;
+import io.github.yufeixuan.DataFrame.IndexType;
+import io.github.yufeixuan.DataFrame.JoinType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DataFrame公开方法的性能测试。
+ *
+ * <p>默认跑1万到100万行。1000万行的WIDE数据在生成和复制时需要超过4g的堆，
+ * 因此不放在默认参数中，需要加大堆内存(-jvmArgsAppend -Xmx16g)并通过-p rows=10000000单独运行。
+ * 会修改数据的测试在每次调用前复制一份独立的数据，复制不计入耗时。
+ * append使用的行数据在单独的State中生成，其他测试不会同时持有两份数据。</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class DataFrameBenchmark {
+
+    private static final Map<Object, Object> FILL_VALUES = new HashMap<>();
+    static {
+        FILL_VALUES.put("c0", 0d);
+        FILL_VALUES.put("c1", 0d);
+    }
+
+    @State(Scope.Benchmark)
+    public static class Frame {
+        @Param({"10000", "100000", "1000000"})
+        public int rows;
+
+        @Param({"NARROW", "WIDE"})
+        public Frames.Shape shape;
+
+        @Param({"NUMERIC", "STRING", "NULL_HEAVY"})
+        public Frames.Kind kind;
+
+        DataFrame<Object> df;
+        DataFrame<Object> indexed;
+        DataFrame<Object> right;
+        DataFrame<Object> rightIndexed;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            df = Frames.frame(rows, shape, kind, 1L);
+
+            indexed = df.clone();
+            indexed.createIndex("key", IndexType.HASH);
+            indexed.createIndex("id", IndexType.SORTED);
+
+            // 右表为打乱顺序后的一半id
+            right = new DataFrame<>("id", "r0");
+            final List<Integer> ids = new ArrayList<>(rows);
+            for (int r = 0; r < rows; r++) {
+                ids.add(r);
+            }
+            Collections.shuffle(ids, new Random(2L));
+            for (final Integer id : ids.subList(0, rows / 2)) {
+                right.append(Arrays.asList(id, (double) id));
+            }
+            rightIndexed = right.clone();
+            rightIndexed.createIndex("id", IndexType.HASH);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Rows {
+        @Param({"10000", "100000", "1000000"})
+        public int rows;
+
+        @Param({"NARROW", "WIDE"})
+        public Frames.Shape shape;
+
+        @Param({"NUMERIC", "STRING", "NULL_HEAVY"})
+        public Frames.Kind kind;
+
+        List<List<Object>> data;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            data = Frames.rows(rows, shape, kind, 1L);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Copy {
+        DataFrame<Object> df;
+
+        @Setup(Level.Invocation)
+        public void setup(final Frame frame) {
+            df = frame.df.clone();
+            // 复制所有共享的列，避免把copy-on-write的开销算进测试方法
+            df.getBlocks();
+        }
+    }
+
+    @Benchmark
+    public DataFrame<Object> append(final Rows rows) {
+        final DataFrame<Object> df = new DataFrame<>(Frames.columns(rows.shape));
+        for (final List<Object> row : rows.data) {
+            df.append(row);
+        }
+        return df;
+    }
+
+    @Benchmark
+    public void getByName(final Frame frame, final Blackhole bh) {
+        final int len = frame.df.length();
+        for (int r = 0; r < len; r++) {
+            bh.consume(frame.df.get(r, "c0"));
+        }
+    }
+
+    @Benchmark
+    public void iterateRows(final Frame frame, final Blackhole bh) {
+        for (final List<Object> row : frame.df) {
+            bh.consume(row);
+        }
+    }
+
+    @Benchmark
+    public void set(final Copy copy) {
+        final int len = copy.df.length();
+        for (int r = 0; r < len; r++) {
+            copy.df.set(r, "bucket", r);
+        }
+    }
+
+    @Benchmark
+    public DataFrame<Object> sortBy(final Frame frame) {
+        return frame.df.sortBy("key");
+    }
+
+    @Benchmark
+    public DataFrame<Object> sortByTwoColumns(final Frame frame) {
+        return frame.df.sortBy("-bucket", "key");
+    }
+
+    @Benchmark
+    public DataFrame<Object> joinOnInner(final Frame frame) {
+        return frame.df.joinOn(frame.right, JoinType.INNER, "id");
+    }
+
+    @Benchmark
+    public DataFrame<Object> joinOnLeft(final Frame frame) {
+        return frame.df.joinOn(frame.right, JoinType.LEFT, "id");
+    }
+
+    @Benchmark
+    public DataFrame<Object> joinOnOuter(final Frame frame) {
+        return frame.df.joinOn(frame.right, JoinType.OUTER, "id");
+    }
+
+    @Benchmark
+    public DataFrame<Object> joinOnIndexed(final Frame frame) {
+        return frame.df.joinOn(frame.rightIndexed, JoinType.INNER, "id");
+    }
+
+    @Benchmark
+    public DataFrame<Object> unique(final Frame frame) {
+        return frame.df.unique("key");
+    }
+
+    @Benchmark
+    public DataFrame<Object> fillNa(final Copy copy) {
+        return copy.df.fillNa("c0", 0d);
+    }
+
+    @Benchmark
+    public DataFrame<Object> pow(final Copy copy) {
+        return copy.df.pow(2d, "bucket");
+    }
+
+    @Benchmark
+    public DataFrame<Object> fillNaMap(final Copy copy) {
+        return copy.df.fillNaMap(FILL_VALUES);
+    }
+
+    @Benchmark
+    public DataFrame<Object> copyColumn(final Copy copy) {
+        return copy.df.copy("c0", "c1", true);
+    }
+
+    @Benchmark
+    public DataFrame<Object> powInt(final Copy copy) {
+        return copy.df.powInt(2d, "bucket");
+    }
+
+    @Benchmark
+    public DataFrame<Object> changeOnNaCondition(final Copy copy) {
+        return copy.df.changeOnNaCondition(Arrays.asList("c0", "c1"), "bucket", 0, 1d);
+    }
+
+    @Benchmark
+    public DataFrame<Object> rename(final Copy copy) {
+        return copy.df.rename("c0", "renamed");
+    }
+
+    @Benchmark
+    public DataFrame<Object> drop(final Copy copy) {
+        return copy.df.drop("c0");
+    }
+
+    @Benchmark
+    public DataFrame<Object> add(final Copy copy) {
+        return copy.df.add("added");
+    }
+
+    @Benchmark
+    public DataFrame<Object> dropRow(final Copy copy) {
+        return copy.df.dropRow(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9));
+    }
+
+    @Benchmark
+    public Object max(final Frame frame) {
+        return frame.df.max("key");
+    }
+
+    @Benchmark
+    public Object min(final Frame frame) {
+        return frame.df.min("key");
+    }
+
+    @Benchmark
+    public DataFrame<Object> cloneFrame(final Frame frame) {
+        return frame.df.clone();
+    }
+
+    @Benchmark
+    public Object freeze(final Frame frame) {
+        return frame.df.freeze();
+    }
+
+    @Benchmark
+    public List<Integer> lookupScan(final Frame frame) {
+        return frame.df.lookup("key", 42);
+    }
+
+    @Benchmark
+    public List<Integer> lookupIndexed(final Frame frame) {
+        return frame.indexed.lookup("key", 42);
+    }
+
+    @Benchmark
+    public List<Integer> rangeIndexed(final Frame frame) {
+        return frame.indexed.range("id", 1000, 2000);
+    }
+
+    @Benchmark
+    public DataFrame<Object> rollingMean(final Copy copy) {
+        return copy.df.rolling(10).mean("bucket");
+    }
+
+    @Benchmark
+    public DataFrame<Object> cumsum(final Copy copy) {
+        return copy.df.cumsum("bucket");
+    }
+
+    @Benchmark
+    public DataFrame<Object> pivot(final Frame frame) {
+        return frame.df.pivot("key", "bucket", "id", Aggregation.SUM);
+    }
+
+    @Benchmark
+    public DataFrame<Object> melt(final Frame frame) {
+        return frame.df.melt(Arrays.<Object>asList("id"), Arrays.<Object>asList("c0", "c1"));
+    }
+}
@@ -0,0 +1,95 @@
+package io.github.yufeixuan.benchmarks;
+
+import io.github.yufeixuan.DataFrame;
+import io.github.yufeixuan.impl.BlockManager;
+
+import java.util.*;
+
+/**
+ * 生成测试用的DataFrame
+ *
+ * <p>列依次为id(唯一的Integer)、key(重复的Integer，约rows/10个不同值)、
+ * bucket(16个不同的Integer)以及若干值列c0、c1...</p>
+ */
+final class Frames {
+    static final int NARROW = 4;
+    static final int WIDE = 64;
+
+    /**
+     * 宽度：值列的数量
+     */
+    enum Shape {
+        NARROW(Frames.NARROW),
+        WIDE(Frames.WIDE);
+
+        final int columns;
+
+        Shape(final int columns) {
+            this.columns = columns;
+        }
+    }
+
+    /**
+     * 值列的数据类型
+     */
+    enum Kind {
+        NUMERIC,
+        STRING,
+        NULL_HEAVY
+    }
+
+    private Frames() {
+    }
+
+    static LinkedList<Object> columns(final Shape shape) {
+        final LinkedList<Object> columns = new LinkedList<>();
+        columns.add("id");
+        columns.add("key");
+        columns.add("bucket");
+        for (int c = 0; c < shape.columns; c++) {
+            columns.add("c" + c);
+        }
+        return columns;
+    }
+
+    static List<List<Object>> rows(final int rows, final Shape shape, final Kind kind, final long seed) {
+        final Random random = new Random(seed);
+        final int keys = Math.max(1, rows / 10);
+        final List<List<Object>> data = new ArrayList<>(rows);
+        for (int r = 0; r < rows; r++) {
+            final List<Object> row = new ArrayList<>(shape.columns + 3);
+            row.add(r);
+            row.add(random.nextInt(keys));
+            row.add(random.nextInt(16));
+            for (int c = 0; c < shape.columns; c++) {
+                row.add(value(random, kind));
+            }
+            data.add(row);
+        }
+        return data;
+    }
+
+    static DataFrame<Object> frame(final int rows, final Shape shape, final Kind kind, final long seed) {
+        final ArrayList<List<Object>> blocks = new ArrayList<>();
+        for (int c = 0; c < shape.columns + 3; c++) {
+            blocks.add(new ArrayList<>(rows));
+        }
+        for (final List<Object> row : rows(rows, shape, kind, seed)) {
+            for (int c = 0; c < row.size(); c++) {
+                blocks.get(c).add(row.get(c));
+            }
+        }
+        return new DataFrame<>(columns(shape), BlockManager.of(blocks));
+    }
+
+    private static Object value(final Random random, final Kind kind) {
+        switch (kind) {
+            case STRING:
+                return "s" + random.nextInt(1000);
+            case NULL_HEAVY:
+                return random.nextBoolean() ? null : (Object) (double) random.nextInt(1000);
+            default:
+                return (double) random.nextInt(1000);
+        }
+    }
+}
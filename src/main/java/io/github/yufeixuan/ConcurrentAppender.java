@@ -0,0 +1,269 @@
+package io.github.yufeixuan;
+
+import io.github.yufeixuan.impl.BlockManager;
+import io.github.yufeixuan.impl.ChunkedColumn;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多线程并发追加数据，用于多个生产者向同一份数据写入的场景。
+ *
+ * <p>每个线程写入自己的缓冲区，缓冲区写满或调用{@link #flush()}时
+ * 封装成不可变的列数据块并发布。读取时只能看到已经发布的数据块，
+ * 得到的总是已发布行的一个完整前缀，不会看到写了一半的行。</p>
+ *
+ * <p>默认只在写满和flush时发布，写入较慢或已经停止写入的线程需要调用flush，
+ * 否则缓冲区中的行一直不可见。指定maxDelay时，缓冲区中最早的行超过maxDelay后
+ * 在下一次写入或读取(length、snapshot、toDataFrame)时发布。</p>
+ *
+ * <p>已经结束的线程的缓冲区在发布完数据后被移除，因此可以使用线程池以外的短期线程写入，
+ * 结束前没有发布的行仍然需要flushAll或maxDelay才能看到。</p>
+ *
+ * @param <V> 数据类型
+ */
+public final class ConcurrentAppender<V> {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+    private final List<Object> columns;
+    private final int chunkSize;
+
+    /**
+     * 缓冲区中的行最长的等待时间，Long.MAX_VALUE表示不按时间发布
+     */
+    private final long maxDelayNanos;
+    private final ConcurrentLinkedQueue<Chunk> chunks = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Buffer> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger sealed = new AtomicInteger();
+    private final ThreadLocal<Buffer> local = new ThreadLocal<Buffer>() {
+        @Override
+        protected Buffer initialValue() {
+            removeAbandoned();
+            final Buffer buffer = new Buffer(Thread.currentThread());
+            buffers.add(buffer);
+            return buffer;
+        }
+    };
+
+    public ConcurrentAppender(final String ... columns) {
+        this(Arrays.<Object>asList((Object[]) columns), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param columns 列名
+     * @param chunkSize 每个线程缓冲的行数，写满后发布
+     */
+    public ConcurrentAppender(final List<Object> columns, final int chunkSize) {
+        this(columns, chunkSize, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param columns 列名
+     * @param chunkSize 每个线程缓冲的行数，写满后发布
+     * @param maxDelay 缓冲区中的行最长的等待时间，超过后在下一次写入或读取时发布
+     * @param unit maxDelay的单位
+     */
+    public ConcurrentAppender(final List<Object> columns, final int chunkSize, final long maxDelay, final TimeUnit unit) {
+        this(columns, chunkSize, positive(maxDelay, unit));
+    }
+
+    private ConcurrentAppender(final List<Object> columns, final int chunkSize, final long maxDelayNanos) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize必须大于0: " + chunkSize);
+        }
+        if (new HashSet<>(columns).size() != columns.size()) {
+            throw new IllegalArgumentException("column name is not unique: " + columns);
+        }
+        this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+        this.chunkSize = chunkSize;
+        this.maxDelayNanos = maxDelayNanos;
+    }
+
+    private static long positive(final long maxDelay, final TimeUnit unit) {
+        if (maxDelay <= 0) {
+            throw new IllegalArgumentException("maxDelay必须大于0: " + maxDelay);
+        }
+        return unit.toNanos(maxDelay);
+    }
+
+    /**
+     * 添加一行数据，可以被多个线程同时调用
+     * @param row 行数据
+     */
+    public ConcurrentAppender<V> append(final List<? extends V> row) {
+        local.get().add(row);
+        return this;
+    }
+
+    /**
+     * 发布当前线程缓冲区中的数据
+     */
+    public void flush() {
+        local.get().seal();
+    }
+
+    /**
+     * 发布所有线程缓冲区中的数据
+     */
+    public void flushAll() {
+        for (final Buffer buffer : buffers) {
+            buffer.seal();
+        }
+        removeAbandoned();
+    }
+
+    /**
+     * 返回已发布的行数
+     */
+    public int length() {
+        sealExpired();
+        return sealed.get();
+    }
+
+    public List<Object> getColumns() {
+        return columns;
+    }
+
+    /**
+     * 返回已发布数据的不可变快照
+     */
+    public FrozenDataFrame<V> snapshot() {
+        return toDataFrame().freeze();
+    }
+
+    /**
+     * 用已发布的数据创建新的DataFrame。数据块不可变，每列直接拼接数据块而不复制，
+     * 写入某列时该列才被复制
+     */
+    public DataFrame<V> toDataFrame() {
+        sealExpired();
+        // 队列只会在尾部追加，遍历得到的是已发布数据块的一个前缀
+        final List<Chunk> published = new ArrayList<>(chunks);
+        final ArrayList<List<V>> blocks = new ArrayList<>(columns.size());
+        for (int c = 0; c < columns.size(); c++) {
+            final List<List<? extends V>> column = new ArrayList<>(published.size());
+            for (final Chunk chunk : published) {
+                column.add(chunk.column(c));
+            }
+            blocks.add(new ChunkedColumn<V>(column));
+        }
+
+        return new DataFrame<>(new LinkedList<>(columns), BlockManager.of(blocks));
+    }
+
+    /**
+     * 发布等待时间超过maxDelay的缓冲区，停止写入的线程的数据由读取方发布
+     */
+    private void sealExpired() {
+        if (maxDelayNanos == Long.MAX_VALUE) {
+            return;
+        }
+        final long now = System.nanoTime();
+        for (final Buffer buffer : buffers) {
+            buffer.sealIfExpired(now);
+        }
+        removeAbandoned();
+    }
+
+    /**
+     * 移除线程已经结束且没有未发布数据的缓冲区
+     */
+    private void removeAbandoned() {
+        final Iterator<Buffer> it = buffers.iterator();
+        while (it.hasNext()) {
+            if (it.next().isAbandoned()) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * 已发布的不可变数据块，按列存储，每列数组的长度等于行数
+     */
+    private final class Chunk {
+        private final Object[][] values;
+
+        private Chunk(final Object[][] values) {
+            this.values = values;
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<V> column(final int col) {
+            return (List<V>) Arrays.asList(values[col]);
+        }
+    }
+
+    /**
+     * 单个线程的写缓冲区，锁只在flushAll以及指定了maxDelay时的读取中才会出现竞争
+     */
+    private final class Buffer {
+        /**
+         * 写入的线程，不阻止线程对象被回收
+         */
+        private final WeakReference<Thread> owner;
+        private Object[][] values;
+        private int size;
+
+        /**
+         * 缓冲区中第一行写入的时间，只在指定了maxDelay时记录
+         */
+        private long firstNanos;
+
+        private Buffer(final Thread owner) {
+            this.owner = new WeakReference<>(owner);
+        }
+
+        private synchronized void add(final List<? extends V> row) {
+            if (values == null) {
+                values = new Object[columns.size()][chunkSize];
+            }
+            for (int c = 0; c < values.length; c++) {
+                values[c][size] = row.get(c);
+            }
+            if (maxDelayNanos == Long.MAX_VALUE) {
+                if (++size == chunkSize) {
+                    seal();
+                }
+                return;
+            }
+            final long now = System.nanoTime();
+            if (size++ == 0) {
+                firstNanos = now;
+            }
+            if (size == chunkSize || now - firstNanos >= maxDelayNanos) {
+                seal();
+            }
+        }
+
+        private synchronized void sealIfExpired(final long now) {
+            if (size > 0 && now - firstNanos >= maxDelayNanos) {
+                seal();
+            }
+        }
+
+        private synchronized boolean isAbandoned() {
+            final Thread thread = owner.get();
+            return size == 0 && (thread == null || !thread.isAlive());
+        }
+
+        private synchronized void seal() {
+            if (size == 0) {
+                return;
+            }
+            if (size < chunkSize) {
+                // 没有写满时只保留写入的部分
+                for (int c = 0; c < values.length; c++) {
+                    values[c] = Arrays.copyOf(values[c], size);
+                }
+            }
+            chunks.add(new Chunk(values));
+            sealed.addAndGet(size);
+            values = null;
+            size = 0;
+        }
+    }
+}
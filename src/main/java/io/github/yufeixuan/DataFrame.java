@@ -1,11 +1,23 @@
 package io.github.yufeixuan;
 
+import io.github.yufeixuan.impl.Applying;
 import io.github.yufeixuan.impl.BlockManager;
+import io.github.yufeixuan.impl.ChunkedColumn;
+import io.github.yufeixuan.impl.ColumnIndex;
+import io.github.yufeixuan.impl.ColumnType;
+import io.github.yufeixuan.impl.EncodedColumn;
 import io.github.yufeixuan.impl.Combining;
+import io.github.yufeixuan.impl.DerivedCache;
+import io.github.yufeixuan.impl.Reshaping;
+import io.github.yufeixuan.impl.Searching;
 import io.github.yufeixuan.impl.Sorting;
+import io.github.yufeixuan.impl.Spilling;
+import io.github.yufeixuan.impl.Statistics;
+import io.github.yufeixuan.metrics.Metrics;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executor;
+import java.util.function.UnaryOperator;
 
 /**
  * @Author: Luoxuan
@@ -16,6 +28,7 @@ public class DataFrame<V> implements Iterable<List<V>> {
     private Map<Object, Integer> index = new LinkedHashMap<>();
     private LinkedList<Object> columns = new LinkedList<>();
     private BlockManager<V> data = new BlockManager<>();
+    private Map<Object, ColumnIndex<V>> rowIndexes = new HashMap<>();
 
 
     /**
@@ -33,6 +46,44 @@ public class DataFrame<V> implements Iterable<List<V>> {
         DESCENDING
     }
 
+    /**
+     * 聚合方式，null值不参与聚合
+     */
+    public enum Aggregation {
+        FIRST,
+        LAST,
+        COUNT,
+        SUM,
+        MEAN,
+        MIN,
+        MAX
+    }
+
+    /**
+     * 列的压缩方式，RLE用于连续重复的值，DELTA用于单调不减的Long，FOR用于取值范围小的Integer
+     */
+    public enum Encoding {
+        RLE,
+        DELTA,
+        FOR
+    }
+
+    /**
+     * 二级索引类型，HASH用于等值查询，SORTED用于等值和范围查询
+     */
+    public enum IndexType {
+        HASH,
+        SORTED
+    }
+
+    /**
+     * 分位数的计算方式，EXACT为快速选择得到的精确值，SKETCH为一次流式遍历得到的近似值
+     */
+    public enum QuantileMethod {
+        EXACT,
+        SKETCH
+    }
+
     /**
      * 获取指定列对应的索引
      * @param name
@@ -58,6 +109,7 @@ public class DataFrame<V> implements Iterable<List<V>> {
 
     public void setBlocks(ArrayList blocksArray) {
         data.setBlocks(blocksArray);
+        reRowIndex();
     }
 
     private void addColIndex(final Object name, final Integer value) {
@@ -83,6 +135,49 @@ public class DataFrame<V> implements Iterable<List<V>> {
         }
     }
 
+    /**
+     * 重建所有二级索引
+     */
+    private void reRowIndex() {
+        for (final Map.Entry<Object, ColumnIndex<V>> entry : rowIndexes.entrySet()) {
+            entry.setValue(buildRowIndex(entry.getKey(), entry.getValue().getType()));
+        }
+    }
+
+    /**
+     * 返回可以修改的二级索引，与快照共享的索引先复制一份，没有索引时返回null
+     */
+    private ColumnIndex<V> writableRowIndex(final Object col) {
+        final ColumnIndex<V> rowIndex = rowIndexes.get(col);
+        if (rowIndex == null || !rowIndex.isShared()) {
+            return rowIndex;
+        }
+        final ColumnIndex<V> copy = rowIndex.copy();
+        rowIndexes.put(col, copy);
+        return copy;
+    }
+
+    /**
+     * 把所有二级索引标记为共享，返回交给快照的索引
+     */
+    private Map<Object, ColumnIndex<V>> shareRowIndexes() {
+        final Map<Object, ColumnIndex<V>> shared = new HashMap<>();
+        for (final Map.Entry<Object, ColumnIndex<V>> entry : rowIndexes.entrySet()) {
+            shared.put(entry.getKey(), entry.getValue().share());
+        }
+        return shared;
+    }
+
+    private ColumnIndex<V> buildRowIndex(final Object col, final IndexType type) {
+        final int colIndex = getColIndex(col);
+        final int len = length();
+        final List<V> values = new ArrayList<>(len);
+        for (int i = 0; i < len; i++) {
+            values.add(data.get(colIndex, i));
+        }
+        return new ColumnIndex<>(type, values);
+    }
+
     /**
      * 获取所有列list
      */
@@ -102,6 +197,24 @@ public class DataFrame<V> implements Iterable<List<V>> {
         setColumns(columns);
     }
 
+    /**
+     * 使用已有的列数据创建，data之后只能由当前对象修改
+     * @param columns 列名
+     * @param data 列数据，例如{@link BlockManager#of(List)}接管的新列
+     */
+    public DataFrame(final LinkedList<Object> columns, final BlockManager<V> data) {
+        setColumns(columns);
+        this.data = data;
+    }
+
+    /**
+     * 使用快照的列数据和二级索引创建，索引在修改前复制
+     */
+    DataFrame(final LinkedList<Object> columns, final BlockManager<V> data, final Map<Object, ColumnIndex<V>> rowIndexes) {
+        this(columns, data);
+        this.rowIndexes.putAll(rowIndexes);
+    }
+
     /**
      * 添加一行数据
      * @param row
@@ -113,6 +226,9 @@ public class DataFrame<V> implements Iterable<List<V>> {
         for (int i = 0; i < columns.size(); i++) {
             data.set(row.get(i), i, len);
         }
+        for (final Object col : rowIndexes.keySet()) {
+            writableRowIndex(col).add(row.get(getColIndex(col)), len);
+        }
         return this;
     }
 
@@ -139,6 +255,19 @@ public class DataFrame<V> implements Iterable<List<V>> {
         return data.column(col);
     }
 
+    /**
+     * 返回第col列的只读数据，不会复制共享的列，压缩的列也不会被解压。
+     * 压缩的列本身只读，直接返回{@link EncodedColumn}，调用方可以使用其中在压缩数据上的计算
+     * @param col 列数，从0开始
+     */
+    public List<V> columnView(final Integer col) {
+        if (col >= data.size()) {
+            return Collections.<V>emptyList();
+        }
+        final List<V> block = data.block(col);
+        return block instanceof EncodedColumn ? block : Collections.unmodifiableList(block);
+    }
+
     /**
      * 获取第row行第col列的数据
      * @param row 行数，从0开始
@@ -168,6 +297,13 @@ public class DataFrame<V> implements Iterable<List<V>> {
      * @param val 值
      */
     public void set(int row, int col, V val) {
+        if (!rowIndexes.isEmpty()) {
+            final ColumnIndex<V> rowIndex = writableRowIndex(columns.get(col));
+            if (rowIndex != null) {
+                rowIndex.remove(data.get(col, row), row);
+                rowIndex.add(val, row);
+            }
+        }
         data.set(val, col, row);
     }
 
@@ -182,7 +318,7 @@ public class DataFrame<V> implements Iterable<List<V>> {
         if (colIndex == null) {
             throw new IllegalArgumentException("列名不存在:" + colName);
         }
-        data.set(val, colIndex, row);
+        set(row, colIndex, val);
     }
 
     /**
@@ -201,6 +337,9 @@ public class DataFrame<V> implements Iterable<List<V>> {
         }
 
         columns.set(colIndex, name);
+        if (rowIndexes.containsKey(old)) {
+            rowIndexes.put(name, rowIndexes.remove(old));
+        }
 
         reColIndex();
         return this;
@@ -225,6 +364,7 @@ public class DataFrame<V> implements Iterable<List<V>> {
     public DataFrame<V> drop(final Integer ... cols) {
         for (final int col : cols) {
             index.remove(columns.get(col));
+            rowIndexes.remove(columns.get(col));
             columns.remove(col);
             data.drop(col);
         }
@@ -237,9 +377,13 @@ public class DataFrame<V> implements Iterable<List<V>> {
      * @param rows 行索引
      */
     public DataFrame<V> dropRow(List<Integer> rows) {
+        final Metrics.Timer timer = Metrics.start("dropRow", length());
         for (final int row : rows) {
             data.del(row);
         }
+        // 删除行之后的行索引都发生了变化
+        reRowIndex();
+        Metrics.finish(timer, length());
         return this;
     }
 
@@ -260,27 +404,139 @@ public class DataFrame<V> implements Iterable<List<V>> {
         return this;
     }
 
-    @Override
-    public DataFrame<V> clone() {
-        LinkedList<Object> columns = getColumns();
-        LinkedList<Object> newCols = new LinkedList<>();
-        columns.forEach(col -> {
-            newCols.add(col);
-        });
+    /**
+     * 给指定列创建二级索引，索引在append、set、dropRow时自动维护。
+     * 直接修改getBlocks、column返回的数据不会更新索引
+     * @param col 列名
+     * @param type 索引类型
+     */
+    public DataFrame<V> createIndex(final Object col, final IndexType type) {
+        if (getColIndex(col) == null) {
+            throw new IllegalArgumentException("列名不存在:" + col);
+        }
+        final Metrics.Timer timer = Metrics.start("createIndex", length());
+        Metrics.strategy(timer, type.name());
+        rowIndexes.put(col, buildRowIndex(col, type));
+        Metrics.finish(timer, length());
+        return this;
+    }
 
-        DataFrame<V> df = new DataFrame<>(newCols);
-        for (int i = 0; i < length(); i++) {
-            df.append(this.row(i));
+    /**
+     * 删除指定列的二级索引
+     * @param col 列名
+     */
+    public DataFrame<V> dropIndex(final Object col) {
+        rowIndexes.remove(col);
+        return this;
+    }
+
+    /**
+     * 获取指定列的二级索引，没有索引时返回null
+     * @param col 列名
+     */
+    public ColumnIndex<V> getRowIndex(final Object col) {
+        return rowIndexes.get(col);
+    }
+
+    /**
+     * 返回指定列的值等于key的所有行索引，没有索引时遍历整列
+     * @param col 列名
+     * @param key 查询的值
+     */
+    public List<Integer> lookup(final Object col, final Object key) {
+        final Integer colIndex = getColIndex(col);
+        if (colIndex == null) {
+            throw new IllegalArgumentException("列名不存在:" + col);
+        }
+        final Metrics.Timer timer = Metrics.start("lookup", length());
+        final List<Integer> rows = Searching.lookup(block(colIndex), rowIndexes.get(col), key, timer);
+        Metrics.finish(timer, rows.size());
+        return rows;
+    }
+
+    /**
+     * 返回指定列的值在[lo, hi]之间的所有行索引，不包含null值，lo或hi为null时不限制该边界。
+     * 有SORTED索引时按值从小到大返回，否则遍历整列并按行顺序返回
+     * @param col 列名
+     * @param lo 下界
+     * @param hi 上界
+     */
+    public List<Integer> range(final Object col, final V lo, final V hi) {
+        final Integer colIndex = getColIndex(col);
+        if (colIndex == null) {
+            throw new IllegalArgumentException("列名不存在:" + col);
+        }
+        final Metrics.Timer timer = Metrics.start("range", length());
+        final List<Integer> rows = Searching.range(block(colIndex), rowIndexes.get(col), lo, hi, timer);
+        Metrics.finish(timer, rows.size());
+        return rows;
+    }
+
+    /**
+     * 第col列的数据，没有分配时为空列表，只能读取
+     */
+    private List<V> block(final int col) {
+        return col < data.size() ? data.block(col) : Collections.<V>emptyList();
+    }
+
+    /**
+     * 按指定方式压缩列，数据不满足压缩条件时抛出IllegalArgumentException。
+     * 压缩的列只读，写入该列、append、dropRow以及getBlocks、column都会先把列解压。
+     * 没有数据时不做任何事
+     * @param col 列名
+     * @param encoding 压缩方式
+     */
+    public DataFrame<V> encode(final Object col, final Encoding encoding) {
+        final Integer colIndex = getColIndex(col);
+        if (colIndex == null) {
+            throw new IllegalArgumentException("列名不存在:" + col);
         }
+        data.encode(colIndex, encoding);
+        return this;
+    }
 
+    /**
+     * 对指定列选择占用内存最少的压缩方式，压缩后不能更小的列保持不变
+     * @param cols 列名
+     */
+    public DataFrame<V> compress(final Object ... cols) {
+        for (final int col : indices(cols)) {
+            final Encoding encoding = EncodedColumn.choose(columnView(col));
+            if (encoding != null) {
+                data.encode(col, encoding);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 复制当前对象，列数据和二级索引在修改时才真正复制(copy-on-write)
+     */
+    @Override
+    public DataFrame<V> clone() {
+        final Metrics.Timer timer = Metrics.start("clone", length());
+        final DataFrame<V> df = new DataFrame<>(new LinkedList<>(columns), data.snapshot(), shareRowIndexes());
+        Metrics.finish(timer, df.length());
         return df;
     }
 
+    /**
+     * 返回当前数据的不可变快照，可以在多个线程间无锁共享。
+     * 之后对当前对象的修改不会影响快照，未修改的列和二级索引不会被复制
+     */
+    public FrozenDataFrame<V> freeze() {
+        final Metrics.Timer timer = Metrics.start("freeze", length());
+        final FrozenDataFrame<V> frozen = new FrozenDataFrame<>(columns, data.snapshot(), shareRowIndexes());
+        Metrics.finish(timer, frozen.length());
+        return frozen;
+    }
+
     /**
      * 填充map的key为列名，map的值作为填充的值
      * @param map
      */
     public DataFrame<V> fillNaMap(Map<Object, Object> map) {
+        final Metrics.Timer timer = Metrics.start("fillNaMap", length());
         for (Map.Entry<Object, Object> m : map.entrySet() ) {
             Integer colIndex = getColIndex(m.getKey());
             if (colIndex == null) {
@@ -296,6 +552,7 @@ public class DataFrame<V> implements Iterable<List<V>> {
             }
         }
 
+        Metrics.finish(timer, length());
         return this;
     }
 
@@ -310,6 +567,7 @@ public class DataFrame<V> implements Iterable<List<V>> {
             throw new IllegalArgumentException("列名不存在" + col);
         }
         int len = length();
+        final Metrics.Timer timer = Metrics.start("fillNa", len);
 
         for (int i = 0; i < len; i++) {
             if (get(i, colIndex) == null) {
@@ -317,6 +575,7 @@ public class DataFrame<V> implements Iterable<List<V>> {
             }
         }
 
+        Metrics.finish(timer, len);
         return this;
     }
 
@@ -361,14 +620,20 @@ public class DataFrame<V> implements Iterable<List<V>> {
             throw new IllegalArgumentException("列名不存在" + col);
         }
         int len = length();
-        for (int i = 0; i < len; i++) {
-            V colVal =  get(i, colIndex);
-            Double val = 1.00000000d;
-            if (colVal != null) {
-                val = Math.pow(num, Double.valueOf(String.valueOf(colVal)));
+        final Metrics.Timer timer = Metrics.start("pow", len);
+        deriveColumn(colIndex, Arrays.asList("pow", num), block -> {
+            final ColumnType type = ColumnType.of(block);
+            final List<V> values = new ArrayList<>(block.size());
+            for (final V colVal : block) {
+                Double val = 1.00000000d;
+                if (colVal != null) {
+                    val = Math.pow(num, type.toDouble(colVal));
+                }
+                values.add((V) val);
             }
-            set(i, colIndex, (V) val);
-        }
+            return values;
+        });
+        Metrics.finish(timer, len);
         return this;
     }
 
@@ -396,14 +661,20 @@ public class DataFrame<V> implements Iterable<List<V>> {
             throw new IllegalArgumentException("列名不存在" + col);
         }
         int len = length();
-        for (int i = 0; i < len; i++) {
-            V colVal =  get(i, colIndex);
-            Integer val = 1;
-            if (colVal != null) {
-                val = (int)Math.pow(num, Double.valueOf(String.valueOf(colVal)));
+        final Metrics.Timer timer = Metrics.start("powInt", len);
+        deriveColumn(colIndex, Arrays.asList("powInt", num), block -> {
+            final ColumnType type = ColumnType.of(block);
+            final List<V> values = new ArrayList<>(block.size());
+            for (final V colVal : block) {
+                Integer val = 1;
+                if (colVal != null) {
+                    val = (int)Math.pow(num, type.toDouble(colVal));
+                }
+                values.add((V) val);
             }
-            set(i, colIndex, (V) val);
-        }
+            return values;
+        });
+        Metrics.finish(timer, len);
         return this;
     }
 
@@ -422,7 +693,7 @@ public class DataFrame<V> implements Iterable<List<V>> {
 
 
     /**
-     * 判断某行的指定列colList的null值是否大于condition，并改变改行col列的值为col+change
+     * 判断某行的指定列colList的null值是否大于condition，并改变改行col列的值为col+change，col列为null时结果为NaN
      * @param colList 指定列
      * @param col 要改变的列
      * @param condition 判断null数量条件
@@ -434,17 +705,18 @@ public class DataFrame<V> implements Iterable<List<V>> {
             throw new IllegalArgumentException("列名不存在" + col);
         }
         int len = length();
+        final Integer[] nullCols = indices(colList);
+        final ColumnType type = type(colIndex);
         for (int i = 0; i < len; i++) {
             int isNullNum = 0;
-            for (Object c : colList) {
-                if (get(i, (String) c) == null) {
+            for (final int c : nullCols) {
+                if (get(i, c) == null) {
                     isNullNum++;
                 }
             }
 
             if (isNullNum > condition) {
-                String valStr = String.valueOf(get(i, colIndex));
-                double dVal = Double.valueOf(valStr);
+                double dVal = type.toDouble(get(i, colIndex));
                 Double changVal =  dVal + change;
                 set(i, colIndex, (V) changVal);
             }
@@ -476,27 +748,73 @@ public class DataFrame<V> implements Iterable<List<V>> {
         if (colIndex == null) {
             throw new IllegalArgumentException("列名不存在" + col);
         }
-        List<V> columnList = column(colIndex);
-
-        List<V> collect = columnList.stream().filter(x -> x != null).collect(Collectors.toList());
-
-        if (collect == null) {
+        final Metrics.Timer timer = Metrics.start(sort > 0 ? "min" : "max", length());
+        if (colIndex >= data.size()) {
+            Metrics.finish(timer, 0);
             return null;
         }
+        final List<V> block = data.block(colIndex);
+        if (block instanceof EncodedColumn) {
+            final EncodedColumn<V> encoded = (EncodedColumn<V>) block;
+            Metrics.finish(timer, 1);
+            return sort > 0 ? encoded.min() : encoded.max();
+        }
 
-        Collections.sort(collect, new Comparator<V> () {
-            @Override
-            public int compare(V o1, V o2) {
-                int result = 0;
-                Comparable v1 = Comparable.class.cast(o1);
-                Comparable v2 = Comparable.class.cast(o2);
-
-                result = v1.compareTo(v2) * sort;
-                return result;
+        // 一次遍历，值相等时取第一个
+        final Comparator<Object> comparator = ColumnType.of(block).comparator();
+        V result = null;
+        for (final V val : block) {
+            if (val != null && (result == null || comparator.compare(val, result) * sort < 0)) {
+                result = val;
             }
-        });
+        }
+
+        Metrics.finish(timer, 1);
+        return result;
+    }
 
-        return collect.get(0);
+    /**
+     * 一次遍历计算所有数值列的描述统计，每个数值列一行，
+     * 列为column、count、mean、std、min、max，null和NaN不参与统计
+     */
+    public DataFrame<V> describe() {
+        final Metrics.Timer timer = Metrics.start("describe", length());
+        final List<List<V>> blocks = new ArrayList<>(columns.size());
+        for (int c = 0; c < columns.size(); c++) {
+            blocks.add(c < data.size() ? data.block(c) : Collections.<V>emptyList());
+        }
+        final DataFrame<V> describe = Statistics.describe(columns, blocks);
+        Metrics.finish(timer, describe.length());
+        return describe;
+    }
+
+    /**
+     * 精确分位数，按位置q*(n-1)线性插值，null和NaN不参与计算，没有数据时为NaN
+     * @param col 列名
+     * @param q 0到1之间的分位数
+     */
+    public List<Double> quantile(final Object col, final double ... q) {
+        return quantile(col, QuantileMethod.EXACT, q);
+    }
+
+    /**
+     * 分位数，数据量很大时可以用SKETCH只占用固定的内存
+     * @param col 列名
+     * @param method 计算方式
+     * @param q 0到1之间的分位数
+     */
+    public List<Double> quantile(final Object col, final QuantileMethod method, final double ... q) {
+        final Integer colIndex = getColIndex(col);
+        if (colIndex == null) {
+            throw new IllegalArgumentException("列名不存在:" + col);
+        }
+        final Metrics.Timer timer = Metrics.start("quantile", length());
+        Metrics.strategy(timer, method.name());
+        final List<V> block = colIndex < data.size() ? data.block(colIndex) : Collections.<V>emptyList();
+        final List<Double> result = method == QuantileMethod.EXACT
+            ? Statistics.quantile(block, q) : Statistics.approxQuantile(block, q);
+        Metrics.finish(timer, result.size());
+        return result;
     }
 
     /**
@@ -568,12 +886,110 @@ public class DataFrame<V> implements Iterable<List<V>> {
         return Combining.joinOn(this, right, join, colKey);
     }
 
+    /**
+     * 限定内存的join，估算的内存超过memoryBudget时按key分区写入临时文件，
+     * 再逐个分区join，结果与joinOn相同。预算只限制join使用的hash表，结果仍然在内存中
+     *
+     * right the other data frame
+     * join the join type
+     * colKey the names of the columns to use as the join key
+     * memoryBudget 内存预算，单位字节
+     */
+    public final DataFrame<V> externalJoinOn(final DataFrame<V> right, final JoinType join, final String colKey, final long memoryBudget) {
+        return Combining.joinOn(this, right, join, colKey, memoryBudget);
+    }
+
+    /**
+     * 按行拼接多个DataFrame，列按列名对齐，按第一次出现的顺序排列，
+     * 缺少的列填充null。每列按总行数一次性分配，再整段复制各个数据块
+     * @param frames 要拼接的数据
+     */
+    public static <V> DataFrame<V> concat(final List<DataFrame<V>> frames) {
+        return concat(frames, false);
+    }
+
+    /**
+     * 按行拼接多个DataFrame
+     * @param frames 要拼接的数据
+     * @param chunked 为true时不复制数据，结果的每列直接引用各个输入的数据块，
+     *                之后修改输入或结果都不会相互影响，结果的列在第一次写入时才复制
+     */
+    public static <V> DataFrame<V> concat(final List<DataFrame<V>> frames, final boolean chunked) {
+        int len = 0;
+        final LinkedList<Object> names = new LinkedList<>();
+        final Set<Object> seen = new HashSet<>();
+        for (final DataFrame<V> frame : frames) {
+            len += frame.length();
+            for (final Object col : frame.columns) {
+                if (seen.add(col)) {
+                    names.add(col);
+                }
+            }
+        }
+
+        final Metrics.Timer timer = Metrics.start("concat", len);
+        Metrics.strategy(timer, chunked ? "chunked" : "copy");
+        final List<BlockManager<V>> sources = new ArrayList<>(frames.size());
+        for (final DataFrame<V> frame : frames) {
+            // 快照保证之后修改输入时先复制被引用的列
+            sources.add(chunked ? frame.data.snapshot() : frame.data);
+        }
+
+        final ArrayList<List<V>> blocks = new ArrayList<>(names.size());
+        for (final Object name : names) {
+            final List<List<? extends V>> chunks = new ArrayList<>(frames.size());
+            for (int i = 0; i < frames.size(); i++) {
+                // 没有数据的DataFrame还没有分配列数据块
+                final Integer col = frames.get(i).getColIndex(name);
+                chunks.add(col != null && col < sources.get(i).size() ? sources.get(i).block(col)
+                    : Collections.<V>nCopies(frames.get(i).length(), null));
+            }
+            if (chunked) {
+                blocks.add(new ChunkedColumn<V>(chunks));
+            } else {
+                // ArrayList.addAll内部使用System.arraycopy整段复制
+                final List<V> block = new ArrayList<>(len);
+                for (final List<? extends V> chunk : chunks) {
+                    block.addAll(chunk);
+                }
+                blocks.add(block);
+            }
+        }
+
+        final DataFrame<V> df = new DataFrame<>(names, BlockManager.of(blocks));
+        Metrics.finish(timer, df.length());
+        return df;
+    }
+
 
     /**
      * 排序
      * @param cols 指定列
      */
     public DataFrame<V> sortBy(final Object ... cols) {
+        final Map<Integer, SortDirection> sortCols = sortColumns(cols);
+        final Metrics.Timer timer = Metrics.start("sortBy", length());
+        final DataFrame<V> sorted = Sorting.sort(this, sortCols);
+        Metrics.finish(timer, sorted.length());
+        return sorted;
+    }
+
+    /**
+     * 限定内存的排序，估算的内存超过memoryBudget时分批排序写入临时文件再归并，结果与sortBy相同。
+     * 预算限制排序使用的中间数据，输入和结果仍然在内存中
+     * @param memoryBudget 内存预算，单位字节
+     * @param cols 指定列
+     */
+    public DataFrame<V> externalSortBy(final long memoryBudget, final Object ... cols) {
+        final Map<Integer, SortDirection> sortCols = sortColumns(cols);
+        final Metrics.Timer timer = Metrics.start("sortBy", length());
+        Metrics.strategy(timer, Spilling.fits(memoryBudget, this) ? "memory" : "external");
+        final DataFrame<V> sorted = Spilling.sort(this, sortCols, memoryBudget);
+        Metrics.finish(timer, sorted.length());
+        return sorted;
+    }
+
+    private Map<Integer, SortDirection> sortColumns(final Object[] cols) {
         final Map<Integer, SortDirection> sortCols = new LinkedHashMap<>();
 
         for (final Object col : cols) {
@@ -582,12 +998,238 @@ public class DataFrame<V> implements Iterable<List<V>> {
             final int c = this.getColIndex(str.startsWith("-") ? str.substring(1) : col);
             sortCols.put(c, dir);
         }
+        return sortCols;
+    }
+
+
+    /**
+     * 长表转宽表，index列的值作为行，columns列的值作为新的列，values列按agg聚合后作为单元格的值
+     * @param index 行所在列名
+     * @param columns 新列名所在列名
+     * @param values 值所在列名
+     * @param agg 同一单元格有多个值时的聚合方式
+     */
+    public DataFrame<V> pivot(final Object index, final Object columns, final Object values, final Aggregation agg) {
+        final Metrics.Timer timer = Metrics.start("pivot", length());
+        final DataFrame<V> pivot = Reshaping.pivot(this, index, columns, values, agg);
+        Metrics.finish(timer, pivot.length());
+        return pivot;
+    }
+
+    /**
+     * 宽表转长表，每个valueVars列的每一行转为一行，列名在variable列，值在value列
+     * @param idVars 保留的列名
+     * @param valueVars 需要转换的列名，为空时转换idVars以外的所有列
+     */
+    public DataFrame<V> melt(final List<Object> idVars, final List<Object> valueVars) {
+        return melt(idVars, valueVars, "variable", "value");
+    }
+
+    /**
+     * 宽表转长表，每个valueVars列的每一行转为一行
+     * @param idVars 保留的列名
+     * @param valueVars 需要转换的列名，为空时转换idVars以外的所有列
+     * @param varName 存放原列名的列名
+     * @param valueName 存放值的列名
+     */
+    public DataFrame<V> melt(final List<Object> idVars, final List<Object> valueVars, final Object varName, final Object valueName) {
+        final Metrics.Timer timer = Metrics.start("melt", length());
+        final DataFrame<V> melted = Reshaping.melt(this, idVars, valueVars, varName, valueName);
+        Metrics.finish(timer, melted.length());
+        return melted;
+    }
+
+    /**
+     * 滑动窗口，例如df.rolling(3).mean("price")
+     * @param window 窗口行数
+     */
+    public Window<V> rolling(final int window) {
+        return new Window<>(this, new Integer[0], 0).rolling(window);
+    }
+
+    /**
+     * 按指定列分区计算窗口函数，例如df.partitionBy("code").cumsum("qty")
+     * @param cols 分区列名
+     */
+    public Window<V> partitionBy(final Object ... cols) {
+        return new Window<>(this, indices(cols), 0);
+    }
+
+    /**
+     * 累加，结果为Double，null值保持为null
+     * @param cols 列名
+     */
+    public DataFrame<V> cumsum(final Object ... cols) {
+        return partitionBy().cumsum(cols);
+    }
+
+    /**
+     * 累乘，结果为Double，null值保持为null
+     * @param cols 列名
+     */
+    public DataFrame<V> cumprod(final Object ... cols) {
+        return partitionBy().cumprod(cols);
+    }
+
+    /**
+     * 向后移动periods行(lag)，periods为负数时向前移动(lead)，空出的位置为null
+     * @param periods 移动的行数
+     * @param cols 列名
+     */
+    public DataFrame<V> shift(final int periods, final Object ... cols) {
+        return partitionBy().shift(periods, cols);
+    }
+
+    /**
+     * 第col列数据的版本号，列数据修改后变化，用作{@link DerivedCache}的key。
+     * 未开启缓存或者该列通过column、getBlocks交给外部修改过时返回-1
+     * @param col 列数，从0开始
+     */
+    public long version(final int col) {
+        return DerivedCache.isEnabled() && col < data.size() ? data.version(col) : -1L;
+    }
+
+    /**
+     * 用derive计算第col列的派生列并替换该列。开启缓存时相同版本的列直接使用缓存的结果，
+     * 缓存的列被多个DataFrame共享，写入前会先复制；未开启缓存时逐行写回原列
+     */
+    private void deriveColumn(final int col, final Object op, final UnaryOperator<List<V>> derive) {
+        if (col >= data.size()) {
+            return;
+        }
+        final long version = version(col);
+        final List<V> block = data.block(col);
+        final List<V> derived = DerivedCache.computeIfAbsent(op, new long[] {version}, () -> derive.apply(block));
+        if (version < 0) {
+            for (int i = 0; i < derived.size(); i++) {
+                set(i, col, derived.get(i));
+            }
+            return;
+        }
+
+        data.replace(col, derived);
+        rebuildRowIndex(col);
+    }
+
+    /**
+     * 第col列的类型，遍历一次列数据
+     */
+    private ColumnType type(final int col) {
+        return col < data.size() ? ColumnType.of(data.block(col)) : ColumnType.EMPTY;
+    }
+
+    /**
+     * 对指定列的每个值执行function，结果写入新的列数据替换原列，按行分段并行执行。
+     * function的第二个参数为行索引，需要是线程安全的
+     * @param col 列名
+     * @param function 转换函数
+     */
+    public DataFrame<V> mapColumn(final Object col, final Function<V, V> function) {
+        return mapColumn(col, function, Applying.defaultExecutor());
+    }
 
-        return Sorting.sort(this, sortCols);
+    /**
+     * 对指定列的每个值执行function，结果写入新的列数据替换原列
+     * @param col 列名
+     * @param function 转换函数
+     * @param executor 执行的线程池，IO密集的函数可以使用{@link Applying#virtualThreadExecutor()}
+     */
+    public DataFrame<V> mapColumn(final Object col, final Function<V, V> function, final Executor executor) {
+        final int colIndex = indices(new Object[] {col})[0];
+        final Metrics.Timer timer = Metrics.start("mapColumn", length());
+        if (colIndex < data.size()) {
+            replaceColumn(colIndex, Applying.map(data.block(colIndex), function, executor));
+        }
+        Metrics.finish(timer, length());
+        return this;
     }
 
+    /**
+     * 对每一行执行function，结果作为新的一列添加到最后，按行分段并行执行。
+     * function的参数为该行所有列的值和行索引，需要是线程安全的
+     * @param col 新的列名
+     * @param function 计算函数
+     */
+    public DataFrame<V> applyRows(final Object col, final Function<List<V>, V> function) {
+        return applyRows(col, function, Applying.defaultExecutor());
+    }
+
+    /**
+     * 对每一行执行function，结果作为新的一列添加到最后
+     * @param col 新的列名
+     * @param function 计算函数
+     * @param executor 执行的线程池
+     */
+    public DataFrame<V> applyRows(final Object col, final Function<List<V>, V> function, final Executor executor) {
+        if (getColIndex(col) != null) {
+            throw new IllegalArgumentException("column name: '" + col +  "' is exist");
+        }
+        final int len = length();
+        final Metrics.Timer timer = Metrics.start("applyRows", len);
+        final List<List<V>> blocks = new ArrayList<>(data.size());
+        for (int c = 0; c < data.size(); c++) {
+            blocks.add(data.block(c));
+        }
+        final List<V> result = Applying.mapRows(blocks, len, function, executor);
+        // 没有数据时列还没有分配
+        for (int c = data.size(); c < columns.size(); c++) {
+            data.add(new ArrayList<V>(len));
+        }
+        columns.add(col);
+        addColIndex(col, columns.size() - 1);
+        data.add(result);
+        Metrics.finish(timer, len);
+        return this;
+    }
+
+    /**
+     * 返回新的DataFrame，指定列的每个值替换为function的结果，其他列与当前对象共享(copy-on-write)，
+     * 没有指定列时转换所有列
+     * @param function 转换函数
+     * @param cols 列名
+     */
+    public DataFrame<V> transform(final Function<V, V> function, final Object ... cols) {
+        return transform(Applying.defaultExecutor(), function, cols);
+    }
+
+    /**
+     * 返回新的DataFrame，指定列的每个值替换为function的结果
+     * @param executor 执行的线程池
+     * @param function 转换函数
+     * @param cols 列名，为空时转换所有列
+     */
+    public DataFrame<V> transform(final Executor executor, final Function<V, V> function, final Object ... cols) {
+        final Integer[] colIndexes = cols.length == 0 ? indices(columns) : indices(cols);
+        final Metrics.Timer timer = Metrics.start("transform", length());
+        final DataFrame<V> df = new DataFrame<>(new LinkedList<>(columns), data.snapshot());
+        for (final int c : colIndexes) {
+            if (c < data.size()) {
+                df.replaceColumn(c, Applying.map(data.block(c), function, executor));
+            }
+        }
+        Metrics.finish(timer, df.length());
+        return df;
+    }
+
+    /**
+     * 用新的列数据替换第col列
+     */
+    private void replaceColumn(final int col, final List<V> block) {
+        data.setBlock(col, block);
+        rebuildRowIndex(col);
+    }
+
+    /**
+     * 第col列整列替换后重建该列的二级索引
+     */
+    private void rebuildRowIndex(final int col) {
+        final ColumnIndex<V> rowIndex = rowIndexes.get(columns.get(col));
+        if (rowIndex != null) {
+            rowIndexes.put(columns.get(col), buildRowIndex(columns.get(col), rowIndex.getType()));
+        }
+    }
 
-    private Integer[] indices(final Object[] names) {
+    Integer[] indices(final Object[] names) {
         return indices(Arrays.asList(names));
     }
 
@@ -618,24 +1260,24 @@ public class DataFrame<V> implements Iterable<List<V>> {
      */
     public DataFrame<V> unique(final Integer ... cols) {
         final DataFrame<V> unique = new DataFrame<V>(getColumns());
-        final Set<List<V>> seen = new HashSet<List<V>>();
+        final Set<Object> seen = new HashSet<>();
 
         final int len = length();
-        final List<V> key = new ArrayList<V>();
+        final Metrics.Timer timer = Metrics.start("unique", len);
 
         for (final int c : cols) {
+            // 按列的类型生成key，数值相等的Integer和Long等视为相同
+            final ColumnType type = type(c);
             for (int r = 0; r < len; r++) {
-                key.add(get(r, c));
-                if (!seen.contains(key)) {
+                if (seen.add(type.key(get(r, c)))) {
                     unique.append(row(r));
-                    seen.add(key);
                 }
-                key.clear();
             }
 
             seen.clear();
         }
 
+        Metrics.finish(timer, unique.length());
         return unique;
     }
 
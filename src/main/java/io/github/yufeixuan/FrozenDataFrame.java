@@ -0,0 +1,225 @@
+package io.github.yufeixuan;
+
+import io.github.yufeixuan.impl.BlockManager;
+import io.github.yufeixuan.impl.ColumnIndex;
+import io.github.yufeixuan.impl.Searching;
+import io.github.yufeixuan.metrics.Metrics;
+
+import java.util.*;
+
+/**
+ * 不可变的DataFrame快照，通过{@link DataFrame#freeze()}创建。
+ *
+ * <p>快照创建后不会再被修改，可以在多个线程间无锁共享读取。
+ * 修改操作返回新的快照，未修改的列与原快照共享(copy-on-write)。
+ * 创建快照时的二级索引随快照保留，thaw之后在修改前复制。</p>
+ *
+ * @param <V> 数据类型
+ */
+public final class FrozenDataFrame<V> implements Iterable<List<V>> {
+
+    private final List<Object> columns;
+    private final Map<Object, Integer> index;
+    private final BlockManager<V> data;
+    private final List<List<V>> blocks;
+    private final Map<Object, ColumnIndex<V>> rowIndexes;
+
+    FrozenDataFrame(final List<Object> columns, final BlockManager<V> data, final Map<Object, ColumnIndex<V>> rowIndexes) {
+        final Map<Object, Integer> index = new LinkedHashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            index.put(columns.get(i), i);
+        }
+        this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+        this.index = Collections.unmodifiableMap(index);
+        this.data = data;
+        this.blocks = data.view();
+        this.rowIndexes = rowIndexes;
+    }
+
+    /**
+     * 获取指定列对应的索引
+     * @param name 列名
+     */
+    public Integer getColIndex(final Object name) {
+        return index.get(name);
+    }
+
+    /**
+     * 获取列数量
+     */
+    public Integer getIndexSize() {
+        return index.size();
+    }
+
+    public Map<Object, Integer> getIndex() {
+        return index;
+    }
+
+    /**
+     * 获取所有列的只读视图
+     */
+    public List<List<V>> getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * 获取所有列list
+     */
+    public List<Object> getColumns() {
+        return columns;
+    }
+
+    /**
+     * 返回数据的长度
+     */
+    public int length() {
+        return data.length();
+    }
+
+    /**
+     * 返回第row行的所有数据
+     * @param row 行数，从0开始
+     */
+    public List<V> row(final Integer row) {
+        return data.row(row);
+    }
+
+    /**
+     * 返回第col列的只读数据
+     * @param col 列数，从0开始
+     */
+    public List<V> column(final Integer col) {
+        return col >= blocks.size() ? null : blocks.get(col);
+    }
+
+    /**
+     * 获取第row行第col列的数据
+     * @param row 行数，从0开始
+     * @param col 列数，从0开始
+     */
+    public V get(int row, int col) {
+        return data.get(col, row);
+    }
+
+    /**
+     * 获取第row行列为col的数据
+     * @param row 行数，从0开始
+     * @param col 列名
+     */
+    public V get(int row, String col) {
+        Integer colIndex = getColIndex(col);
+        if (colIndex == null) {
+            throw new IllegalArgumentException("列名不存在:" + col);
+        }
+        return data.get(colIndex, row);
+    }
+
+    /**
+     * 返回指定列的值等于key的所有行索引，没有索引时遍历整列
+     * @param col 列名
+     * @param key 查询的值
+     */
+    public List<Integer> lookup(final Object col, final Object key) {
+        final Integer colIndex = getColIndex(col);
+        if (colIndex == null) {
+            throw new IllegalArgumentException("列名不存在:" + col);
+        }
+        final Metrics.Timer timer = Metrics.start("lookup", length());
+        final List<Integer> rows = Searching.lookup(block(colIndex), rowIndexes.get(col), key, timer);
+        Metrics.finish(timer, rows.size());
+        return rows;
+    }
+
+    /**
+     * 返回指定列的值在[lo, hi]之间的所有行索引，不包含null值，lo或hi为null时不限制该边界。
+     * 有SORTED索引时按值从小到大返回，否则遍历整列并按行顺序返回
+     * @param col 列名
+     * @param lo 下界
+     * @param hi 上界
+     */
+    public List<Integer> range(final Object col, final V lo, final V hi) {
+        final Integer colIndex = getColIndex(col);
+        if (colIndex == null) {
+            throw new IllegalArgumentException("列名不存在:" + col);
+        }
+        final Metrics.Timer timer = Metrics.start("range", length());
+        final List<Integer> rows = Searching.range(block(colIndex), rowIndexes.get(col), lo, hi, timer);
+        Metrics.finish(timer, rows.size());
+        return rows;
+    }
+
+    private List<V> block(final int col) {
+        return col < data.size() ? data.block(col) : Collections.<V>emptyList();
+    }
+
+    /**
+     * 返回与当前快照共享数据和二级索引的可修改DataFrame，修改时才复制对应的列和索引
+     */
+    public DataFrame<V> thaw() {
+        return new DataFrame<>(new LinkedList<>(columns), data.snapshot(), rowIndexes);
+    }
+
+    /**
+     * 返回设置了指定值的新快照，只复制被修改的列
+     * @param row 行数
+     * @param col 列名
+     * @param val 值
+     */
+    public FrozenDataFrame<V> set(int row, String col, V val) {
+        final DataFrame<V> df = thaw();
+        df.set(row, col, val);
+        return df.freeze();
+    }
+
+    /**
+     * 返回追加了一行数据的新快照
+     * @param row 行数据
+     */
+    public FrozenDataFrame<V> append(List<? extends V> row) {
+        final DataFrame<V> df = thaw();
+        df.append(row);
+        return df.freeze();
+    }
+
+    /**
+     * 返回删除了指定行的新快照
+     * @param rows 行索引
+     */
+    public FrozenDataFrame<V> dropRow(List<Integer> rows) {
+        return thaw().dropRow(rows).freeze();
+    }
+
+    /**
+     * 返回删除了指定列的新快照，其余列不会被复制
+     * @param cols 列名
+     */
+    public FrozenDataFrame<V> drop(final Object ... cols) {
+        return thaw().drop(cols).freeze();
+    }
+
+    /**
+     * 返回重命名列之后的新快照，列数据不会被复制
+     * @param old 源列名
+     * @param name 新列名
+     */
+    public FrozenDataFrame<V> rename(final Object old, final Object name) {
+        return thaw().rename(old, name).freeze();
+    }
+
+    @Override
+    public Iterator<List<V>> iterator() {
+        return new Iterator<List<V>>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index != data.length();
+            }
+
+            @Override
+            public List<V> next() {
+                return data.row(index++);
+            }
+        };
+    }
+}
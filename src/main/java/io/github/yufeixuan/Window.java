@@ -0,0 +1,128 @@
+package io.github.yufeixuan;
+
+import io.github.yufeixuan.DataFrame.Aggregation;
+import io.github.yufeixuan.impl.Windowing;
+import io.github.yufeixuan.metrics.Metrics;
+
+import java.util.List;
+
+/**
+ * 窗口函数，通过{@link DataFrame#rolling(int)}或{@link DataFrame#partitionBy(Object...)}创建。
+ *
+ * <p>按当前的行顺序计算，需要时间顺序的数据请先sortBy。
+ * 计算结果直接写回指定的列，rolling、cumsum、cumprod的结果为Double。
+ * 指定了分区列时每个分区单独计算。</p>
+ *
+ * @param <V> 数据类型
+ */
+public class Window<V> {
+    private final DataFrame<V> df;
+    private final Integer[] partCols;
+    private final int window;
+
+    Window(final DataFrame<V> df, final Integer[] partCols, final int window) {
+        this.df = df;
+        this.partCols = partCols;
+        this.window = window;
+    }
+
+    /**
+     * 设置滑动窗口的行数
+     * @param window 窗口行数
+     */
+    public Window<V> rolling(final int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("window必须大于0: " + window);
+        }
+        return new Window<>(df, partCols, window);
+    }
+
+    /**
+     * 滑动窗口求和
+     * @param cols 列名
+     */
+    public DataFrame<V> sum(final Object ... cols) {
+        return rolling(Aggregation.SUM, cols);
+    }
+
+    /**
+     * 滑动窗口求平均值
+     * @param cols 列名
+     */
+    public DataFrame<V> mean(final Object ... cols) {
+        return rolling(Aggregation.MEAN, cols);
+    }
+
+    /**
+     * 滑动窗口求最小值
+     * @param cols 列名
+     */
+    public DataFrame<V> min(final Object ... cols) {
+        return rolling(Aggregation.MIN, cols);
+    }
+
+    /**
+     * 滑动窗口求最大值
+     * @param cols 列名
+     */
+    public DataFrame<V> max(final Object ... cols) {
+        return rolling(Aggregation.MAX, cols);
+    }
+
+    /**
+     * 累加
+     * @param cols 列名
+     */
+    public DataFrame<V> cumsum(final Object ... cols) {
+        final Metrics.Timer timer = Metrics.start("cumsum", df.length());
+        final List<int[]> partitions = Windowing.partitions(df, partCols);
+        for (final int col : df.indices(cols)) {
+            Windowing.cumulative(df, partitions, col, false);
+        }
+        Metrics.finish(timer, df.length());
+        return df;
+    }
+
+    /**
+     * 累乘
+     * @param cols 列名
+     */
+    public DataFrame<V> cumprod(final Object ... cols) {
+        final Metrics.Timer timer = Metrics.start("cumprod", df.length());
+        final List<int[]> partitions = Windowing.partitions(df, partCols);
+        for (final int col : df.indices(cols)) {
+            Windowing.cumulative(df, partitions, col, true);
+        }
+        Metrics.finish(timer, df.length());
+        return df;
+    }
+
+    /**
+     * 向后移动periods行(lag)，periods为负数时向前移动(lead)
+     * @param periods 移动的行数
+     * @param cols 列名
+     */
+    public DataFrame<V> shift(final int periods, final Object ... cols) {
+        final Metrics.Timer timer = Metrics.start("shift", df.length());
+        final List<int[]> partitions = Windowing.partitions(df, partCols);
+        for (final int col : df.indices(cols)) {
+            Windowing.shift(df, partitions, col, periods);
+        }
+        Metrics.finish(timer, df.length());
+        return df;
+    }
+
+    private DataFrame<V> rolling(final Aggregation agg, final Object[] cols) {
+        if (window <= 0) {
+            throw new IllegalStateException("请先通过rolling设置窗口大小");
+        }
+        final Metrics.Timer timer = Metrics.start("rolling", df.length());
+        Metrics.strategy(timer, agg.name());
+        final List<int[]> partitions = Windowing.partitions(df, partCols);
+        for (final int col : df.indices(cols)) {
+            Windowing.rolling(df, partitions, col, window, agg);
+        }
+        Metrics.finish(timer, df.length());
+        return df;
+    }
+}
@@ -0,0 +1,174 @@
+package io.github.yufeixuan.impl;
+
+import io.github.yufeixuan.DataFrame.Function;
+
+import java.util.*;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按行分段并行执行用户函数，每段写入结果列中互不重叠的位置。
+ *
+ * <p>函数的第二个参数为行索引。执行期间不能修改源数据，
+ * 函数本身需要是线程安全的。</p>
+ */
+public class Applying {
+    /**
+     * 每段至少的行数，行数较少时在当前线程执行
+     */
+    private static final int MIN_CHUNK_ROWS = 1024;
+
+    /**
+     * 虚拟线程每段的行数，适合会阻塞的函数，例如访问网络
+     */
+    private static final int VIRTUAL_CHUNK_ROWS = 16;
+
+    public static Executor defaultExecutor() {
+        return ForkJoinPool.commonPool();
+    }
+
+    /**
+     * JDK 21及以上每个任务一个虚拟线程的Executor，用于IO密集的函数。
+     * 编译目标为Java 8，因此通过反射创建，低版本JDK抛出UnsupportedOperationException
+     */
+    public static ExecutorService virtualThreadExecutor() {
+        try {
+            final Object executor = Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return new VirtualThreadExecutor((ExecutorService) executor);
+        } catch (final NoSuchMethodException e) {
+            throw new UnsupportedOperationException("虚拟线程需要JDK 21及以上: " + System.getProperty("java.version"), e);
+        } catch (final ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 对values的每个值执行function，返回新的列
+     */
+    public static <I, O> List<O> map(final List<I> values, final Function<I, O> function, final Executor executor) {
+        final int len = values.size();
+        final List<O> result = new ArrayList<>(Collections.<O>nCopies(len, null));
+        run(len, executor, (from, to) -> {
+            for (int r = from; r < to; r++) {
+                result.set(r, function.apply(values.get(r), r));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 对每一行执行function，返回新的列
+     * @param blocks 所有列的数据
+     */
+    public static <V, O> List<O> mapRows(final List<List<V>> blocks, final int len, final Function<List<V>, O> function, final Executor executor) {
+        final List<O> result = new ArrayList<>(Collections.<O>nCopies(len, null));
+        run(len, executor, (from, to) -> {
+            for (int r = from; r < to; r++) {
+                final List<V> row = new ArrayList<>(blocks.size());
+                for (final List<V> block : blocks) {
+                    row.add(block.get(r));
+                }
+                result.set(r, function.apply(row, r));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 把[0, len)分段提交到executor并等待全部完成，函数抛出的异常原样抛出
+     * @return 分段的数量
+     */
+    public static int run(final int len, final Executor executor, final Range range) {
+        final int chunk = chunkRows(len, executor);
+        if (len <= chunk) {
+            range.run(0, len);
+            return 1;
+        }
+
+        final List<CompletableFuture<Void>> futures = new ArrayList<>((len + chunk - 1) / chunk);
+        for (int from = 0; from < len; from += chunk) {
+            final int start = from;
+            final int end = Math.min(len, from + chunk);
+            futures.add(CompletableFuture.runAsync(() -> range.run(start, end), executor));
+        }
+        try {
+            // join建立happens-before，之后可以安全读取各段写入的结果
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } catch (final CompletionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+        return futures.size();
+    }
+
+    private static int chunkRows(final int len, final Executor executor) {
+        if (executor instanceof VirtualThreadExecutor) {
+            return VIRTUAL_CHUNK_ROWS;
+        }
+        final int parallelism = executor instanceof ForkJoinPool
+            ? ((ForkJoinPool) executor).getParallelism() : Runtime.getRuntime().availableProcessors();
+        // 每个线程大约分到4段，执行时间不均匀时可以互相补位
+        return Math.max(MIN_CHUNK_ROWS, (len + 4 * parallelism - 1) / (4 * parallelism));
+    }
+
+    /**
+     * 处理[from, to)的行
+     */
+    public interface Range {
+        void run(int from, int to);
+    }
+
+    /**
+     * 标记虚拟线程的Executor，使用较小的分段
+     */
+    private static final class VirtualThreadExecutor extends AbstractExecutorService {
+        private final ExecutorService delegate;
+
+        private VirtualThreadExecutor(final ExecutorService delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(final Runnable command) {
+            delegate.execute(command);
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
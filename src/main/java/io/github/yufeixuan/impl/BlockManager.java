@@ -1,6 +1,9 @@
 package io.github.yufeixuan.impl;
 
+import io.github.yufeixuan.DataFrame.Encoding;
+
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @Author: Luoxuan
@@ -9,6 +12,23 @@ import java.util.*;
 public class BlockManager<V> {
     private final List<List<V>> blocks;
 
+    /**
+     * 与其他BlockManager共享的列，修改前需要先复制(copy-on-write)
+     */
+    private final Set<List<V>> shared = Collections.newSetFromMap(new IdentityHashMap<List<V>, Boolean>());
+
+    /**
+     * 列数据的版本号，用于{@link DerivedCache}的key，原地修改后删除，下次使用时重新分配。
+     * 读操作(sortBy、joinOn、thaw等)也会分配版本号，多个线程同时读取时需要持有versions的锁
+     */
+    private static final AtomicLong VERSIONS = new AtomicLong();
+    private final Map<List<V>, Long> versions = new IdentityHashMap<>();
+
+    /**
+     * 通过column、getBlocks交给外部的列，可能在外部被修改，不能缓存
+     */
+    private final Set<List<V>> escaped = Collections.newSetFromMap(new IdentityHashMap<List<V>, Boolean>());
+
     public BlockManager() {
         this(Collections.<List<V>>emptyList());
     }
@@ -20,15 +40,153 @@ public class BlockManager<V> {
         }
     }
 
+    private BlockManager(final List<List<V>> sharedBlocks, final BlockManager<V> source) {
+        blocks = new LinkedList<>(sharedBlocks);
+        shared.addAll(sharedBlocks);
+        // 共享的列不会再被原地修改，版本号可以继续使用
+        synchronized (source.versions) {
+            versions.putAll(source.versions);
+        }
+    }
+
+    /**
+     * 接管新创建的列，调用方之后不能再持有或修改这些列
+     * @param blocks 列数据，每列的长度相同
+     */
+    public static <V> BlockManager<V> of(final List<? extends List<V>> blocks) {
+        final BlockManager<V> manager = new BlockManager<>();
+        manager.blocks.addAll(blocks);
+        return manager;
+    }
+
+    /**
+     * 创建一个共享所有列的快照，任意一方修改某列时才复制该列。
+     * 交给外部的列可能继续被修改，快照中使用复制的数据
+     */
+    public BlockManager<V> snapshot() {
+        if (DerivedCache.isEnabled()) {
+            // 先分配版本号，快照和当前对象对共享的列使用相同的缓存key
+            for (int c = 0; c < blocks.size(); c++) {
+                version(c);
+            }
+        }
+        final List<List<V>> snapshot = new ArrayList<>(blocks.size());
+        for (final List<V> block : blocks) {
+            if (!escaped.isEmpty() && escaped.contains(block)) {
+                snapshot.add(new ArrayList<>(block));
+                continue;
+            }
+            // 已共享的列不再写入，保证冻结的快照上只有读操作
+            if (!shared.contains(block)) {
+                shared.add(block);
+            }
+            snapshot.add(block);
+        }
+        return new BlockManager<>(snapshot, this);
+    }
+
+    /**
+     * 返回第col列可写的数据，如果该列被共享或者不是ArrayList(例如压缩的列)则先复制
+     */
+    private List<V> writable(final int col) {
+        List<V> block = blocks.get(col);
+        final boolean isShared = !shared.isEmpty() && shared.remove(block);
+        if (isShared || !(block instanceof ArrayList)) {
+            forget(block, isShared);
+            block = new ArrayList<>(block);
+            blocks.set(col, block);
+        } else if (!versions.isEmpty()) {
+            // 原地修改，依赖旧版本的缓存失效
+            final Long version = versions.remove(block);
+            if (version != null) {
+                DerivedCache.invalidate(version);
+            }
+        }
+        return block;
+    }
+
+    /**
+     * 当前对象不再使用block。block仍被其他快照共享时，其他快照还会用同一个版本读取缓存，
+     * 否则依赖该版本的缓存不会再被使用，直接失效
+     */
+    private void forget(final List<V> block, final boolean isShared) {
+        if (!versions.isEmpty()) {
+            final Long version = versions.remove(block);
+            if (version != null && !isShared) {
+                DerivedCache.invalidate(version);
+            }
+        }
+        if (!escaped.isEmpty()) {
+            escaped.remove(block);
+        }
+    }
+
+    /**
+     * 第col列当前数据的版本号，列被交给外部修改过时返回-1
+     */
+    public long version(final int col) {
+        final List<V> block = blocks.get(col);
+        if (escaped.contains(block)) {
+            return -1L;
+        }
+        synchronized (versions) {
+            Long version = versions.get(block);
+            if (version == null) {
+                version = VERSIONS.incrementAndGet();
+                versions.put(block, version);
+            }
+            return version;
+        }
+    }
+
+    /**
+     * 把第col列替换为新的数据，原来的列不会被修改
+     */
+    public void setBlock(final int col, final List<V> block) {
+        final List<V> old = blocks.set(col, block);
+        forget(old, shared.remove(old));
+    }
+
+    /**
+     * 把第col列替换为只读的数据，例如缓存中的派生列，写入前会先复制
+     */
+    public void replace(final int col, final List<V> block) {
+        final List<V> old = blocks.set(col, block);
+        forget(old, shared.remove(old));
+        shared.add(block);
+    }
+
+    /**
+     * 返回第col列的数据，只能读取，压缩的列不会被解压
+     */
+    public List<V> block(final int col) {
+        return blocks.get(col);
+    }
+
+    /**
+     * 按指定方式压缩第col列，之后写入该列时会先解压。列中没有数据时不做任何事
+     */
+    public void encode(final int col, final Encoding encoding) {
+        if (col >= blocks.size() || blocks.get(col).isEmpty()) {
+            return;
+        }
+        final List<V> block = blocks.get(col);
+        blocks.set(col, EncodedColumn.encode(block, encoding));
+        forget(block, shared.remove(block));
+    }
+
     public void reshape(final int cols, final int rows) {
         for (int c = blocks.size(); c < cols; c++) {
             add(new ArrayList<V>(rows));
         }
 
         // 给每列添加null到rows行的数量
-        for (final List<V> block : blocks) {
-            for (int r = block.size(); r < rows; r++) {
-                block.add(null);
+        for (int c = 0; c < blocks.size(); c++) {
+            if (blocks.get(c).size() < rows) {
+                final List<V> block = writable(c);
+                for (int r = block.size(); r < rows; r++) {
+                    block.add(null);
+                }
             }
         }
     }
@@ -38,7 +196,7 @@ public class BlockManager<V> {
     }
 
     public void set(final V value, final int col, final int row) {
-        blocks.get(col).set(row, value);
+        writable(col).set(row, value);
     }
 
     public List<V> row(final int row) {
@@ -52,7 +210,7 @@ public class BlockManager<V> {
 
     public void del(final int row) {
         for (int i = 0; i < blocks.size(); i++) {
-            blocks.get(i).remove(row);
+            writable(i).remove(row);
         }
     }
 
@@ -77,23 +235,53 @@ public class BlockManager<V> {
         if (col >= blocks.size()) {
             return null;
         }
-        return blocks.get(col);
+        final List<V> block = writable(col);
+        escape(block);
+        return block;
     }
 
     public void drop(int colIndex) {
         if (colIndex <= blocks.size()) {
-            blocks.remove(colIndex);
+            final List<V> block = blocks.remove(colIndex);
+            forget(block, shared.remove(block));
         }
     }
 
     public List<List<V>> getBlocks() {
+        for (int c = 0; c < blocks.size(); c++) {
+            escape(writable(c));
+        }
         return blocks;
     }
 
+    private void escape(final List<V> block) {
+        escaped.add(block);
+        final Long version = versions.remove(block);
+        if (version != null) {
+            DerivedCache.invalidate(version);
+        }
+    }
+
+    /**
+     * 返回所有列的只读视图，不会复制共享的列
+     */
+    public List<List<V>> view() {
+        final List<List<V>> view = new ArrayList<>(blocks.size());
+        for (final List<V> block : blocks) {
+            view.add(Collections.unmodifiableList(block));
+        }
+        return Collections.unmodifiableList(view);
+    }
+
+    /**
+     * 添加外部传入的列，调用方仍然持有这些列，按交给外部的列处理
+     */
     public void setBlocks(ArrayList blocksArray){
         if (blocksArray != null && blocksArray.size() > 0) {
             for (int i = 0; i < blocksArray.size(); i++) {
-                blocks.add((List<V>) blocksArray.get(i));
+                final List<V> block = (List<V>) blocksArray.get(i);
+                blocks.add(block);
+                escaped.add(block);
             }
         }
     }
@@ -0,0 +1,71 @@
+package io.github.yufeixuan.impl;
+
+import java.util.*;
+
+/**
+ * 由多个列数据块拼接而成的只读列，不复制数据块。
+ * 写入时BlockManager会先把列复制成ArrayList。
+ */
+public class ChunkedColumn<V> extends AbstractList<V> implements RandomAccess {
+    private final List<List<? extends V>> chunks;
+    private final int[] ends;
+
+    public ChunkedColumn(final List<List<? extends V>> chunks) {
+        this.chunks = new ArrayList<>(chunks);
+        this.ends = new int[chunks.size()];
+        int end = 0;
+        for (int i = 0; i < ends.length; i++) {
+            end += chunks.get(i).size();
+            ends[i] = end;
+        }
+    }
+
+    @Override
+    public int size() {
+        return ends.length == 0 ? 0 : ends[ends.length - 1];
+    }
+
+    @Override
+    public V get(final int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        // 第一个end大于index的块，空的块会被跳过
+        int chunk = Arrays.binarySearch(ends, index + 1);
+        chunk = chunk >= 0 ? chunk : -chunk - 1;
+        while (ends[chunk] <= index) {
+            chunk++;
+        }
+        while (chunk > 0 && ends[chunk - 1] > index) {
+            chunk--;
+        }
+        return chunks.get(chunk).get(index - (chunk == 0 ? 0 : ends[chunk - 1]));
+    }
+
+    /**
+     * 按块顺序遍历，不对每个元素查找所在的块
+     */
+    @Override
+    public Iterator<V> iterator() {
+        return new Iterator<V>() {
+            private int chunk;
+            private Iterator<? extends V> it = Collections.<V>emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!it.hasNext() && chunk < chunks.size()) {
+                    it = chunks.get(chunk++).iterator();
+                }
+                return it.hasNext();
+            }
+
+            @Override
+            public V next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return it.next();
+            }
+        };
+    }
+}
@@ -0,0 +1,220 @@
+package io.github.yufeixuan.impl;
+
+import io.github.yufeixuan.DataFrame.IndexType;
+
+import java.util.*;
+
+/**
+ * 列值到行索引的二级索引
+ *
+ * <p>HASH索引支持O(1)的等值查询，SORTED索引支持O(log n)的等值和范围查询。
+ * 同一个值对应的行索引按加入顺序保存。与快照共享的索引不再修改，
+ * DataFrame修改之前先用{@link #copy()}复制一份。</p>
+ */
+public class ColumnIndex<V> {
+    private final IndexType type;
+
+    /**
+     * 索引中值的类型，key按该类型统一(例如Long列中的Integer)，SORTED索引按该类型比较。
+     * 加入更宽类型的值时整个索引按新的类型重建
+     */
+    private ColumnType valueType;
+    private Map<Object, List<Integer>> buckets;
+
+    /**
+     * 上一个检查过类型的值的类，同一个类的值加入时不需要再检查
+     */
+    private Class<?> checked;
+
+    /**
+     * 对应多行的值的数量，为0时说明索引的值是唯一的
+     */
+    private int duplicates = 0;
+
+    /**
+     * 是否已经与快照共享
+     */
+    private volatile boolean shared;
+
+    public ColumnIndex(final IndexType type, final List<? extends V> values) {
+        this.type = type;
+        this.valueType = ColumnType.of(values);
+        this.buckets = newBuckets();
+        for (int r = 0; r < values.size(); r++) {
+            put(values.get(r), r);
+        }
+    }
+
+    private ColumnIndex(final ColumnIndex<V> source) {
+        this.type = source.type;
+        this.valueType = source.valueType;
+        this.checked = source.checked;
+        this.duplicates = source.duplicates;
+        this.buckets = newBuckets();
+        for (final Map.Entry<Object, List<Integer>> entry : source.buckets.entrySet()) {
+            buckets.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+    }
+
+    /**
+     * 标记为与快照共享，之后只能读取，返回当前对象
+     */
+    public ColumnIndex<V> share() {
+        shared = true;
+        return this;
+    }
+
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * 复制一份可以修改的索引
+     */
+    public ColumnIndex<V> copy() {
+        return new ColumnIndex<>(this);
+    }
+
+    public IndexType getType() {
+        return type;
+    }
+
+    public ColumnType getValueType() {
+        return valueType;
+    }
+
+    public boolean isUnique() {
+        return duplicates == 0;
+    }
+
+    /**
+     * values中的值能否直接在索引中查询。值的类型比索引更宽时(例如在Integer的索引中查询Long)
+     * 需要按更宽的类型比较，调用方应遍历列数据
+     */
+    public boolean supports(final List<?> values) {
+        return ColumnType.union(valueType, ColumnType.of(sample(), values)) == valueType;
+    }
+
+    public void add(final Object key, final int row) {
+        if (key != null && key.getClass() != checked) {
+            final ColumnType next = ColumnType.union(valueType, ColumnType.of(sample(), Collections.singletonList(key)));
+            if (next != valueType) {
+                rebuild(next);
+            }
+            checked = key.getClass();
+        }
+        put(key, row);
+    }
+
+    public void remove(final Object key, final int row) {
+        if (!supports(Collections.singletonList(key))) {
+            return;
+        }
+        final Object k = valueType.key(key);
+        final List<Integer> rows = buckets.get(k);
+        if (rows == null || !rows.remove(Integer.valueOf(row))) {
+            return;
+        }
+        if (rows.isEmpty()) {
+            buckets.remove(k);
+        } else if (rows.size() == 1) {
+            duplicates--;
+        }
+    }
+
+    /**
+     * 返回值等于key的所有行索引
+     * @param key 查询的值
+     */
+    public List<Integer> lookup(final Object key) {
+        if (!supports(Collections.singletonList(key))) {
+            throw new IllegalArgumentException("索引的类型" + valueType + "不支持查询: " + key);
+        }
+        final List<Integer> rows = buckets.get(valueType.key(key));
+        if (rows == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(new ArrayList<>(rows));
+    }
+
+    /**
+     * 返回值在[lo, hi]之间的所有行索引，按值从小到大排列，不包含null值。
+     * lo或hi为null时表示不限制该边界
+     * @param lo 下界
+     * @param hi 上界
+     */
+    public List<Integer> range(final Object lo, final Object hi) {
+        if (type != IndexType.SORTED) {
+            throw new UnsupportedOperationException("只有SORTED索引支持范围查询");
+        }
+        if (!supports(Arrays.asList(lo, hi))) {
+            throw new IllegalArgumentException("索引的类型" + valueType + "不支持查询: " + lo + ", " + hi);
+        }
+        final NavigableMap<Object, List<Integer>> sorted = (NavigableMap<Object, List<Integer>>) buckets;
+        if (lo != null && hi != null && valueType.comparator().compare(lo, hi) > 0) {
+            return Collections.emptyList();
+        }
+        final Object from = valueType.key(lo);
+        final NavigableMap<Object, List<Integer>> sub = hi == null ?
+            sorted.tailMap(from, lo != null) : sorted.subMap(from, lo != null, valueType.key(hi), true);
+
+        final List<Integer> result = new ArrayList<>();
+        for (final List<Integer> rows : sub.values()) {
+            result.addAll(rows);
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private Map<Object, List<Integer>> newBuckets() {
+        return type == IndexType.SORTED ?
+            new TreeMap<Object, List<Integer>>(valueType.comparator()) : new HashMap<Object, List<Integer>>();
+    }
+
+    private void put(final Object key, final int row) {
+        final Object k = valueType.key(key);
+        List<Integer> rows = buckets.get(k);
+        if (rows == null) {
+            rows = new ArrayList<>(1);
+            buckets.put(k, rows);
+        }
+        rows.add(row);
+        if (rows.size() == 2) {
+            duplicates++;
+        }
+    }
+
+    /**
+     * 按更宽的类型重新计算所有的key，原来不同的key可能合并
+     */
+    private void rebuild(final ColumnType next) {
+        final Map<Object, List<Integer>> old = buckets;
+        valueType = next;
+        buckets = newBuckets();
+        duplicates = 0;
+        for (final Map.Entry<Object, List<Integer>> entry : old.entrySet()) {
+            final Object k = next.key(entry.getKey());
+            final List<Integer> rows = buckets.get(k);
+            if (rows == null) {
+                buckets.put(k, entry.getValue());
+            } else {
+                rows.addAll(entry.getValue());
+                Collections.sort(rows);
+            }
+        }
+        for (final List<Integer> rows : buckets.values()) {
+            duplicates += rows.size() > 1 ? 1 : 0;
+        }
+    }
+
+    /**
+     * 索引中任意一个非null的值，用来判断新的值是否为同一个类
+     */
+    private List<Object> sample() {
+        for (final Object key : buckets.keySet()) {
+            if (key != null) {
+                return Collections.singletonList(key);
+            }
+        }
+        return Collections.emptyList();
+    }
+}
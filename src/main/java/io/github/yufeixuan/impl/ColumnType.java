@@ -0,0 +1,252 @@
+package io.github.yufeixuan.impl;
+
+import io.github.yufeixuan.DataFrame;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 列的值类型，每次操作前遍历一次列得到，之后比较、计算hash key和数值转换
+ * 都使用对应类型的专用实现，不再逐个值做Comparable强制转换和字符串解析。
+ *
+ * <p>Integer、Long、Short、Byte混合的列按long比较，与Double、Float混合时按double比较，
+ * 含有BigDecimal、BigInteger等其他Number时按BigDecimal比较。数值相等的值key相同，
+ * 例如同一列中的Integer 1和Long 1在去重和join时视为相同。null排在最前面。</p>
+ */
+public enum ColumnType {
+    /**
+     * 全部为null
+     */
+    EMPTY {
+        @Override
+        public Comparator<Object> comparator() {
+            return (a, b) -> nulls(a, b);
+        }
+    },
+    INTEGER {
+        @Override
+        public Comparator<Object> comparator() {
+            return (a, b) -> a == null || b == null ? nulls(a, b) : Integer.compare((Integer) a, (Integer) b);
+        }
+
+        @Override
+        public double toDouble(final Object value) {
+            return value == null ? Double.NaN : (Integer) value;
+        }
+    },
+    LONG {
+        @Override
+        public Comparator<Object> comparator() {
+            return (a, b) -> a == null || b == null ? nulls(a, b) : Long.compare(((Number) a).longValue(), ((Number) b).longValue());
+        }
+
+        @Override
+        public Object key(final Object value) {
+            return value == null || value instanceof Long ? value : Long.valueOf(((Number) value).longValue());
+        }
+
+        @Override
+        public double toDouble(final Object value) {
+            return value == null ? Double.NaN : ((Number) value).doubleValue();
+        }
+    },
+    DOUBLE {
+        @Override
+        public Comparator<Object> comparator() {
+            return (a, b) -> a == null || b == null ? nulls(a, b) : Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+        }
+
+        @Override
+        public Object key(final Object value) {
+            return value == null || value instanceof Double ? value : Double.valueOf(((Number) value).doubleValue());
+        }
+
+        @Override
+        public double toDouble(final Object value) {
+            return value == null ? Double.NaN : ((Number) value).doubleValue();
+        }
+    },
+    DECIMAL {
+        @Override
+        public Comparator<Object> comparator() {
+            return (a, b) -> a == null || b == null ? nulls(a, b) : decimal(a).compareTo(decimal(b));
+        }
+
+        @Override
+        public Object key(final Object value) {
+            if (value == null) {
+                return null;
+            }
+            final BigDecimal decimal = decimal(value);
+            // 1.0和1.00的equals不相等，去掉末尾的0后统一
+            return decimal.signum() == 0 ? BigDecimal.ZERO : decimal.stripTrailingZeros();
+        }
+
+        @Override
+        public double toDouble(final Object value) {
+            return value == null ? Double.NaN : ((Number) value).doubleValue();
+        }
+    },
+    STRING {
+        @Override
+        public Comparator<Object> comparator() {
+            return (a, b) -> a == null || b == null ? nulls(a, b) : ((String) a).compareTo((String) b);
+        }
+
+        @Override
+        public double toDouble(final Object value) {
+            return value == null ? Double.NaN : Double.parseDouble((String) value);
+        }
+    },
+    /**
+     * 全部为同一个实现了Comparable的类，例如Boolean、Date
+     */
+    COMPARABLE {
+        @Override
+        @SuppressWarnings("unchecked")
+        public Comparator<Object> comparator() {
+            return (a, b) -> a == null || b == null ? nulls(a, b) : ((Comparable<Object>) a).compareTo(b);
+        }
+    },
+    /**
+     * 不同类型混合的列，先按类名比较，类名相同时按自然顺序比较
+     */
+    OBJECT {
+        @Override
+        @SuppressWarnings("unchecked")
+        public Comparator<Object> comparator() {
+            return (a, b) -> {
+                if (a == null || b == null) {
+                    return nulls(a, b);
+                }
+                if (a.getClass() != b.getClass()) {
+                    return a.getClass().getName().compareTo(b.getClass().getName());
+                }
+                return a instanceof Comparable ? ((Comparable<Object>) a).compareTo(b) : 0;
+            };
+        }
+    };
+
+    /**
+     * 返回比较两个值的Comparator，null排在最前面
+     */
+    public abstract Comparator<Object> comparator();
+
+    /**
+     * 用于hash和判断相等的key，数值相等的值返回相同的key
+     */
+    public Object key(final Object value) {
+        return value;
+    }
+
+    /**
+     * 转为double，null转为NaN，非数值按字符串解析
+     */
+    public double toDouble(final Object value) {
+        return value == null ? Double.NaN
+            : value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(String.valueOf(value));
+    }
+
+    /**
+     * 遍历一次得到列的类型
+     * @param values 列数据
+     */
+    public static ColumnType of(final List<?> values) {
+        return of(values, Collections.emptyList());
+    }
+
+    /**
+     * 列中的值与others放在一起比较时使用的类型，例如查询条件、索引中已有的值
+     * @param values 列数据
+     * @param others 其他的值
+     */
+    public static ColumnType of(final List<?> values, final List<?> others) {
+        ColumnType type = EMPTY;
+        Class<?> cls = null;
+        for (final List<?> list : Arrays.asList(values, others)) {
+            for (final Object value : list) {
+                if (value == null || value.getClass() == cls) {
+                    continue;
+                }
+                if (type == COMPARABLE) {
+                    // 出现了第二个类
+                    return OBJECT;
+                }
+                cls = value.getClass();
+                type = union(type, of(value));
+                if (type == OBJECT) {
+                    return OBJECT;
+                }
+            }
+        }
+        return type;
+    }
+
+    /**
+     * 遍历一次df的第col列得到它的类型
+     */
+    public static ColumnType of(final DataFrame<?> df, final int col) {
+        return of(df.columnView(col));
+    }
+
+    /**
+     * 两个类型的值放在一起比较时使用的类型，例如join两边的列
+     */
+    public static ColumnType union(final ColumnType a, final ColumnType b) {
+        if (a == b || b == EMPTY) {
+            return a;
+        }
+        if (a == EMPTY) {
+            return b;
+        }
+        if (a.isNumeric() && b.isNumeric()) {
+            return a.ordinal() > b.ordinal() ? a : b;
+        }
+        return OBJECT;
+    }
+
+    private static ColumnType of(final Object value) {
+        if (value instanceof Integer) {
+            return INTEGER;
+        }
+        if (value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return LONG;
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return DOUBLE;
+        }
+        if (value instanceof Number) {
+            return DECIMAL;
+        }
+        if (value instanceof String) {
+            return STRING;
+        }
+        // 同一个类的Comparable才能互相比较，不同的类在union时变为OBJECT
+        return value instanceof Comparable ? COMPARABLE : OBJECT;
+    }
+
+    private boolean isNumeric() {
+        return this == INTEGER || this == LONG || this == DOUBLE || this == DECIMAL;
+    }
+
+    private static int nulls(final Object a, final Object b) {
+        return a == null ? (b == null ? 0 : -1) : 1;
+    }
+
+    private static BigDecimal decimal(final Object value) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        if (value instanceof BigInteger) {
+            return new BigDecimal((BigInteger) value);
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return BigDecimal.valueOf(((Number) value).longValue());
+        }
+        return new BigDecimal(value.toString());
+    }
+}
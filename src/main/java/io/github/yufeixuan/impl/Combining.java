@@ -21,34 +21,125 @@ package io.github.yufeixuan.impl;
 import io.github.yufeixuan.DataFrame;
 import io.github.yufeixuan.DataFrame.JoinType;
 import io.github.yufeixuan.DataFrame.KeyFunction;
+import io.github.yufeixuan.metrics.Metrics;
 
 import java.util.*;
 
 public class Combining {
     public static <V> DataFrame<V> join(final DataFrame<V> left, final DataFrame<V> right, final JoinType how, final String joinKey, final KeyFunction<V> on) {
+        return join(left, right, how, joinKey, table(left, 0, on), table(right, 1, on));
+    }
+
+    /**
+     * 用两边的hash表(key到行索引)join，hash表可能来自缓存，不能修改
+     */
+    private static <V> DataFrame<V> join(final DataFrame<V> left, final DataFrame<V> right, final JoinType how, final String joinKey,
+                                         final Map<Object, Integer> leftMap, final Map<Object, Integer> rightMap) {
         final Integer lColIndex = left.getColIndex(joinKey);
         final Integer rColIndex = right.getColIndex(joinKey);
 
         if (lColIndex == null || rColIndex == null) {
             throw new IllegalArgumentException("joinKey不存在: " + joinKey);
         }
-        final Map<Object, List<V>> leftMap = new LinkedHashMap<>();
-        final Map<Object, List<V>> rightMap = new LinkedHashMap<>();
 
-        for (final List<V> row : left) {
-            final Object key = on.apply(row, 0);
-            if (leftMap.put(key, row) != null) {
-                throw new IllegalArgumentException("generated key is not unique: " + key);
+        final DataFrame<V> df = new DataFrame<>(joinColumns(left, right, how));
+        final DataFrame<V> first = how != JoinType.RIGHT ? left : right;
+        final DataFrame<V> second = how != JoinType.RIGHT ? right : left;
+        for (final Map.Entry<Object, Integer> entry : how != JoinType.RIGHT ? leftMap.entrySet() : rightMap.entrySet()) {
+            final List<V> tmp = new ArrayList<>(first.row(entry.getValue()));
+            final Integer row = how != JoinType.RIGHT ? rightMap.get(entry.getKey()) : leftMap.get(entry.getKey());
+            if (row != null || how != JoinType.INNER) {
+                tmp.addAll(row != null ? second.row(row) : Collections.<V>nCopies(second.getColumns().size(), null));
+                df.append(tmp);
+            }
+        }
+
+        if (how == JoinType.OUTER) {
+            for (final Map.Entry<Object, Integer> entry : rightMap.entrySet()) {
+                if (leftMap.get(entry.getKey()) == null) {
+                    final List<V> rightRow = right.row(entry.getValue());
+                    final List<V> tmp = new ArrayList<>(Collections.<V>nCopies(left.getColumns().size(), null));
+                    tmp.set(lColIndex, rightRow.get(rColIndex));
+                    tmp.addAll(rightRow);
+                    df.append(tmp);
+                }
+            }
+        }
+
+        df.rename(String.format("%s_%s", joinKey, "left"), joinKey).drop(String.format("%s_%s", joinKey, "right"));
+
+        return df;
+    }
+
+    /**
+     * Join using an existing index on the build side (the right frame,
+     * or the left frame for right joins) instead of hashing its rows.
+     */
+    private static <V> DataFrame<V> indexJoin(final DataFrame<V> left, final DataFrame<V> right, final JoinType how, final String joinKey, final ColumnIndex<V> index) {
+        final DataFrame<V> probe = how != JoinType.RIGHT ? left : right;
+        final DataFrame<V> build = how != JoinType.RIGHT ? right : left;
+        final Integer probeColIndex = probe.getColIndex(joinKey);
+        if (probeColIndex == null) {
+            throw new IllegalArgumentException("joinKey不存在: " + joinKey);
+        }
+        if (!index.isUnique()) {
+            throw new IllegalArgumentException("generated key is not unique: " + joinKey);
+        }
+
+        final DataFrame<V> df = new DataFrame<>(joinColumns(left, right, how));
+        final Set<Object> seen = new HashSet<>();
+        final List<V> missing = Collections.<V>nCopies(build.getColumns().size(), null);
+        for (final List<V> probeRow : probe) {
+            final Object key = probeRow.get(probeColIndex);
+            if (!seen.add(index.getValueType().key(key))) {
+                throw new IllegalArgumentException("generated key is not unique: " + Collections.singletonList(key));
+            }
+            final List<Integer> match = index.lookup(key);
+            if (!match.isEmpty() || how != JoinType.INNER) {
+                final List<V> tmp = new ArrayList<>(probeRow);
+                tmp.addAll(match.isEmpty() ? missing : build.row(match.get(0)));
+                df.append(tmp);
             }
         }
 
-        for (final List<V> row : right) {
-            final Object key = on.apply(row, 1);
-            if (rightMap.put(key, row) != null) {
+        df.rename(String.format("%s_%s", joinKey, "left"), joinKey).drop(String.format("%s_%s", joinKey, "right"));
+
+        return df;
+    }
+
+    /**
+     * 用KeyFunction生成每行的key，返回key到行索引的hash表
+     */
+    private static <V> Map<Object, Integer> table(final DataFrame<V> df, final int side, final KeyFunction<V> on) {
+        final Map<Object, Integer> map = new LinkedHashMap<>();
+        int r = 0;
+        for (final List<V> row : df) {
+            final Object key = on.apply(row, side);
+            if (map.put(key, r++) != null) {
                 throw new IllegalArgumentException("generated key is not unique: " + key);
             }
         }
+        return map;
+    }
 
+    /**
+     * 与columnKey生成的key相同的hash表，只读取key列，开启缓存时key列没有变化就直接使用缓存
+     */
+    private static <V> Map<Object, Integer> columnTable(final DataFrame<V> df, final int col, final ColumnType type) {
+        return DerivedCache.computeIfAbsent(Arrays.asList("joinTable", type), new long[] {df.version(col)}, () -> {
+            final Map<Object, Integer> map = new LinkedHashMap<>();
+            final int len = df.length();
+            for (int r = 0; r < len; r++) {
+                final Object key = Collections.singletonList(type.key(df.get(r, col)));
+                if (map.put(key, r) != null) {
+                    throw new IllegalArgumentException("generated key is not unique: " + key);
+                }
+            }
+            return map;
+        });
+    }
+
+    static <V> LinkedList<Object> joinColumns(final DataFrame<V> left, final DataFrame<V> right, final JoinType how) {
         final LinkedList<Object> columns = new LinkedList<>(how != JoinType.RIGHT ? left.getColumns() : right.getColumns());
         for (Object column : how != JoinType.RIGHT ? right.getColumns() : left.getColumns()) {
             final int index = columns.indexOf(column);
@@ -67,56 +158,64 @@ public class Combining {
             }
             columns.add(column);
         }
+        return columns;
+    }
 
-        final DataFrame<V> df = new DataFrame<>(columns);
-        for (final Map.Entry<Object, List<V>> entry : how != JoinType.RIGHT ? leftMap.entrySet() : rightMap.entrySet()) {
-            final List<V> tmp = new ArrayList<>(entry.getValue());
-            final List<V> row = how != JoinType.RIGHT ? rightMap.get(entry.getKey()) : leftMap.get(entry.getKey());
-            if (row != null || how != JoinType.INNER) {
-                tmp.addAll(row != null ? row : Collections.<V>nCopies(right.getColumns().size(), null));
-                df.append(tmp);
-            }
-        }
 
-        if (how == JoinType.OUTER) {
-            for (final Map.Entry<Object, List<V>> entry : how != JoinType.RIGHT ? rightMap.entrySet() : leftMap.entrySet()) {
-                final List<V> row = how != JoinType.RIGHT ? leftMap.get(entry.getKey()) : rightMap.get(entry.getKey());
-                if (row == null) {
-                    final List<V> tmp = new ArrayList<>(Collections.<V>nCopies(
-                        how != JoinType.RIGHT ? left.getColumns().size() : right.getColumns().size(), null));
-                    tmp.set(lColIndex, entry.getValue().get(rColIndex));
-                    tmp.addAll(entry.getValue());
-                    df.append(tmp);
-                }
-            }
+    public static <V> DataFrame<V> joinOn(final DataFrame<V> left, final DataFrame<V> right, final JoinType how, final String joinKey) {
+        final Metrics.Timer timer = Metrics.start("joinOn", left.length() + right.length());
+        // outer joins also need the unmatched build side rows in order, so only the other join types use the index
+        final ColumnIndex<V> index = (how != JoinType.RIGHT ? right : left).getRowIndex(joinKey);
+        final DataFrame<V> probe = how != JoinType.RIGHT ? left : right;
+        final Integer probeColIndex = probe.getColIndex(joinKey);
+        // 两边key的类型不同时(例如Integer和Long)需要按更宽的类型比较，索引的key不适用
+        if (index != null && how != JoinType.OUTER && probeColIndex != null && index.supports(probe.columnView(probeColIndex))) {
+            Metrics.strategy(timer, "index");
+            final DataFrame<V> df = indexJoin(left, right, how, joinKey, index);
+            Metrics.finish(timer, df.length());
+            return df;
         }
 
-        df.rename(String.format("%s_%s", joinKey, "left"), joinKey).drop(String.format("%s_%s", joinKey, "right"));
-
+        Metrics.strategy(timer, "hash");
+        final Integer lColIndex = left.getColIndex(joinKey);
+        final Integer rColIndex = right.getColIndex(joinKey);
+        if (lColIndex == null || rColIndex == null) {
+            throw new IllegalArgumentException("joinKey不存在: " + joinKey);
+        }
+        final ColumnType type = ColumnType.union(ColumnType.of(left, lColIndex), ColumnType.of(right, rColIndex));
+        final DataFrame<V> df = join(left, right, how, joinKey,
+            columnTable(left, lColIndex, type), columnTable(right, rColIndex, type));
+        Metrics.finish(timer, df.length());
         return df;
     }
 
+    /**
+     * Join with a memory budget, spilling hash partitions to disk when
+     * the estimated size of both frames exceeds it.
+     */
+    public static <V> DataFrame<V> joinOn(final DataFrame<V> left, final DataFrame<V> right, final JoinType how, final String joinKey, final long memoryBudget) {
+        final Metrics.Timer timer = Metrics.start("joinOn", left.length() + right.length());
+        Metrics.strategy(timer, Spilling.fits(memoryBudget, left, right) ? "hash" : "external");
+        final DataFrame<V> df = Spilling.join(left, right, how, joinKey, columnKey(left, right, joinKey), memoryBudget);
+        Metrics.finish(timer, df.length());
+        return df;
+    }
 
-    public static <V> DataFrame<V> joinOn(final DataFrame<V> left, final DataFrame<V> right, final JoinType how, final String joinKey) {
-        return join(left, right, how, joinKey, new KeyFunction<V>() {
+    /**
+     * 按joinKey列的值生成key，两边列的类型只确定一次，数值相等的Integer和Long等可以匹配
+     */
+    private static <V> KeyFunction<V> columnKey(final DataFrame<V> left, final DataFrame<V> right, final String joinKey) {
+        final Integer lColIndex = left.getColIndex(joinKey);
+        final Integer rColIndex = right.getColIndex(joinKey);
+        if (lColIndex == null || rColIndex == null) {
+            throw new IllegalArgumentException("joinKey不存在: " + joinKey);
+        }
+        final ColumnType type = ColumnType.union(ColumnType.of(left, lColIndex), ColumnType.of(right, rColIndex));
+        return new KeyFunction<V>() {
             @Override
             public Object apply(final List<V> value, final int side) {
-                final List<V> key = new ArrayList<>();
-                Integer colIndex = null;
-                if (side == 0) {
-                    colIndex = left.getColIndex(joinKey);
-                }
-                else {
-                    colIndex = right.getColIndex(joinKey);
-                }
-
-                if (colIndex == null) {
-                    throw new IllegalArgumentException("joinKey不存在: " + joinKey);
-                }
-                key.add(value.get(colIndex));
-
-                return Collections.unmodifiableList(key);
+                return Collections.singletonList(type.key(value.get(side == 0 ? lColIndex : rColIndex)));
             }
-        });
+        };
     }
 }
@@ -0,0 +1,248 @@
+package io.github.yufeixuan.impl;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * 派生数据的缓存，例如计算得到的列、排序的行顺序和join的hash表，默认不开启。
+ *
+ * <p>key由操作、参数以及源列的版本号组成。版本号由{@link BlockManager}分配，
+ * 列被原地修改(set、append、dropRow、fillNa等)后换成新的版本号并删除旧版本的缓存，
+ * 共享的列在修改前会被复制，因此clone出来的DataFrame可以共用缓存。
+ * 估算的内存超过预算时淘汰最久没有使用的数据。</p>
+ */
+public final class DerivedCache {
+    private static volatile DerivedCache cache;
+
+    private final long memoryBudget;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Long, Set<Key>> byVersion = new HashMap<>();
+    private long bytes;
+    private long hits;
+    private long misses;
+
+    private DerivedCache(final long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * 开启缓存，之前缓存的数据被丢弃
+     * @param memoryBudget 内存预算，单位字节
+     */
+    public static void enable(final long memoryBudget) {
+        if (memoryBudget <= 0) {
+            throw new IllegalArgumentException("memoryBudget必须大于0: " + memoryBudget);
+        }
+        cache = new DerivedCache(memoryBudget);
+    }
+
+    public static void disable() {
+        cache = null;
+    }
+
+    public static boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * 返回当前的缓存，未开启时返回null
+     */
+    public static DerivedCache get() {
+        return cache;
+    }
+
+    /**
+     * 从缓存中取得派生数据，没有时计算并放入缓存。
+     * 未开启缓存、没有源列或某个源列不能缓存(版本号小于0)时直接计算。
+     * 缓存的数据会被多个DataFrame共用，调用方不能修改
+     * @param op 操作和参数，需要实现equals和hashCode
+     * @param versions 源列的版本号
+     * @param supplier 计算派生数据
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T computeIfAbsent(final Object op, final long[] versions, final Supplier<T> supplier) {
+        final DerivedCache current = cache;
+        // 没有源列时无法区分数据，不缓存
+        if (current == null || versions.length == 0) {
+            return supplier.get();
+        }
+        for (final long version : versions) {
+            if (version < 0) {
+                return supplier.get();
+            }
+        }
+
+        final Key key = new Key(op, versions);
+        final Object cached = current.lookup(key);
+        if (cached != null) {
+            return (T) cached;
+        }
+        // 在锁外计算，多个线程可能重复计算同一个key，结果相同
+        final T value = supplier.get();
+        current.put(key, value);
+        return value;
+    }
+
+    /**
+     * 删除依赖该版本的所有缓存
+     */
+    public static void invalidate(final long version) {
+        final DerivedCache current = cache;
+        if (current != null) {
+            current.remove(version);
+        }
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * 当前缓存的数据估算占用的内存，单位字节
+     */
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized Object lookup(final Key key) {
+        final Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    private synchronized void put(final Key key, final Object value) {
+        final long size = sizeOf(value);
+        if (size > memoryBudget || entries.containsKey(key)) {
+            return;
+        }
+        entries.put(key, new Entry(value, size));
+        bytes += size;
+        for (final long version : key.versions) {
+            Set<Key> keys = byVersion.get(version);
+            if (keys == null) {
+                keys = new HashSet<>();
+                byVersion.put(version, keys);
+            }
+            keys.add(key);
+        }
+
+        // 按访问顺序从最久没有使用的开始淘汰
+        final Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (bytes > memoryBudget && it.hasNext()) {
+            final Map.Entry<Key, Entry> eldest = it.next();
+            it.remove();
+            bytes -= eldest.getValue().size;
+            unlink(eldest.getKey());
+        }
+    }
+
+    private synchronized void remove(final long version) {
+        final Set<Key> keys = byVersion.remove(version);
+        if (keys == null) {
+            return;
+        }
+        for (final Key key : keys) {
+            final Entry entry = entries.remove(key);
+            if (entry != null) {
+                bytes -= entry.size;
+                unlink(key);
+            }
+        }
+    }
+
+    private void unlink(final Key key) {
+        for (final long version : key.versions) {
+            final Set<Key> keys = byVersion.get(version);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    byVersion.remove(version);
+                }
+            }
+        }
+    }
+
+    /**
+     * 估算缓存的数据占用的内存，只抽样部分值
+     */
+    private static long sizeOf(final Object value) {
+        if (value instanceof int[]) {
+            return 16L + 4L * ((int[]) value).length;
+        }
+        if (value instanceof List) {
+            final List<?> list = (List<?>) value;
+            return 16L + list.size() * (8L + sample(list, list.size()));
+        }
+        if (value instanceof Map) {
+            final Map<?, ?> map = (Map<?, ?>) value;
+            // HashMap的节点、数组槽位以及Integer的值
+            return 48L + map.size() * (64L + sample(map.keySet(), map.size()));
+        }
+        return 64L;
+    }
+
+    private static long sample(final Iterable<?> values, final int size) {
+        if (size == 0) {
+            return 0L;
+        }
+        final int step = Math.max(1, size / 64);
+        long bytes = 0;
+        int sampled = 0;
+        int i = 0;
+        for (final Object value : values) {
+            if (i++ % step == 0) {
+                bytes += Spilling.estimateValueBytes(value);
+                sampled++;
+            }
+        }
+        return bytes / sampled;
+    }
+
+    private static final class Key {
+        private final Object op;
+        private final long[] versions;
+        private final int hash;
+
+        private Key(final Object op, final long[] versions) {
+            this.op = op;
+            this.versions = versions.clone();
+            this.hash = 31 * op.hashCode() + Arrays.hashCode(versions);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return hash == other.hash && Arrays.equals(versions, other.versions) && op.equals(other.op);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long size;
+
+        private Entry(final Object value, final long size) {
+            this.value = value;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,776 @@
+package io.github.yufeixuan.impl;
+
+import io.github.yufeixuan.DataFrame.Encoding;
+
+import java.util.*;
+
+/**
+ * 压缩存储的只读列，可以像普通的List一样读取。
+ *
+ * <p>RLE把连续相同的值存为一段，DELTA把单调不减的Long存为与前一个值的差并按位压缩，
+ * FOR把Integer存为与最小值的差并按位压缩。count、sum、min、max以及等值和范围过滤
+ * 直接在压缩后的数据上计算。写入时BlockManager会先把列解压成ArrayList。</p>
+ */
+public abstract class EncodedColumn<V> extends AbstractList<V> implements RandomAccess {
+
+    public abstract Encoding getEncoding();
+
+    /**
+     * 估算的内存占用，单位字节
+     */
+    public abstract long sizeInBytes();
+
+    /**
+     * 把values按指定方式压缩，数据不满足压缩条件时抛出IllegalArgumentException
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> EncodedColumn<V> encode(final List<? extends V> values, final Encoding encoding) {
+        switch (encoding) {
+            case RLE:
+                return new RunLength<>(values);
+            case DELTA:
+                if (!isMonotoneLong(values)) {
+                    throw new IllegalArgumentException("DELTA只支持没有null且单调不减的Long列");
+                }
+                return (EncodedColumn<V>) new Delta((List<Long>) values);
+            case FOR:
+                if (!isInteger(values)) {
+                    throw new IllegalArgumentException("FOR只支持Integer列");
+                }
+                return (EncodedColumn<V>) new FrameOfReference((List<Integer>) values);
+            default:
+                throw new IllegalArgumentException("不支持的压缩方式: " + encoding);
+        }
+    }
+
+    /**
+     * 选择占用内存最少的压缩方式，都不比原始数据小时返回null
+     */
+    public static Encoding choose(final List<?> values) {
+        final int len = values.size();
+        if (len == 0) {
+            return null;
+        }
+        // 原始数据：每个值一个引用和一个装箱对象
+        long best = 20L * len;
+        Encoding encoding = null;
+
+        if (isMonotoneLong(values)) {
+            final long size = new Delta(castLongs(values)).sizeInBytes();
+            if (size < best) {
+                best = size;
+                encoding = Encoding.DELTA;
+            }
+        }
+        if (isInteger(values)) {
+            final long size = new FrameOfReference(castIntegers(values)).sizeInBytes();
+            if (size < best) {
+                best = size;
+                encoding = Encoding.FOR;
+            }
+        }
+        int runs = 1;
+        for (int i = 1; i < len; i++) {
+            if (!Objects.equals(values.get(i - 1), values.get(i))) {
+                runs++;
+            }
+        }
+        if (RunLength.sizeInBytes(runs) < best) {
+            encoding = Encoding.RLE;
+        }
+        return encoding;
+    }
+
+    /**
+     * 值的类型，不需要解压整列
+     */
+    public ColumnType type() {
+        return ColumnType.of(this);
+    }
+
+    /**
+     * 非null且不是NaN的值的数量
+     */
+    public int count() {
+        final ColumnType type = type();
+        int count = 0;
+        for (final V value : this) {
+            count += Double.isNaN(type.toDouble(value)) ? 0 : 1;
+        }
+        return count;
+    }
+
+    /**
+     * 非null且不是NaN的值的和，只用于数值列
+     */
+    public double sum() {
+        final ColumnType type = type();
+        double sum = 0d;
+        for (final V value : this) {
+            final double x = type.toDouble(value);
+            sum += Double.isNaN(x) ? 0d : x;
+        }
+        return sum;
+    }
+
+    /**
+     * 非null且不是NaN的值与mean之差的平方和，只用于数值列
+     */
+    public double sumOfSquares(final double mean) {
+        final ColumnType type = type();
+        double sum = 0d;
+        for (final V value : this) {
+            final double x = type.toDouble(value);
+            sum += Double.isNaN(x) ? 0d : (x - mean) * (x - mean);
+        }
+        return sum;
+    }
+
+    /**
+     * 最小的非null值，没有时返回null
+     */
+    public V min() {
+        return extreme(this, -1);
+    }
+
+    /**
+     * 最大的非null值，没有时返回null
+     */
+    public V max() {
+        return extreme(this, 1);
+    }
+
+    /**
+     * 值等于key的所有行索引，数值相等的值视为相等，例如Long列中查询Integer
+     */
+    public List<Integer> indicesOf(final Object key) {
+        final ColumnType type = ColumnType.of(this, Collections.singletonList(key));
+        final Object k = type.key(key);
+        final List<Integer> rows = new ArrayList<>();
+        int i = 0;
+        for (final V value : this) {
+            if (Objects.equals(type.key(value), k)) {
+                rows.add(i);
+            }
+            i++;
+        }
+        return rows;
+    }
+
+    /**
+     * 值在[lo, hi]之间的所有行索引，不包含null，lo或hi为null时不限制该边界
+     */
+    public List<Integer> indicesBetween(final Object lo, final Object hi) {
+        final Comparator<Object> comparator = ColumnType.of(this, Arrays.asList(lo, hi)).comparator();
+        final List<Integer> rows = new ArrayList<>();
+        int i = 0;
+        for (final V value : this) {
+            if (between(comparator, value, lo, hi)) {
+                rows.add(i);
+            }
+            i++;
+        }
+        return rows;
+    }
+
+    private static boolean between(final Comparator<Object> comparator, final Object val, final Object lo, final Object hi) {
+        return val != null
+            && (lo == null || comparator.compare(val, lo) >= 0)
+            && (hi == null || comparator.compare(val, hi) <= 0);
+    }
+
+    /**
+     * sign为-1时返回最小的非null值，为1时返回最大的非null值
+     */
+    @SuppressWarnings("unchecked")
+    private static <V> V extreme(final List<?> values, final int sign) {
+        final Comparator<Object> comparator = ColumnType.of(values).comparator();
+        Object result = null;
+        for (final Object value : values) {
+            if (value != null && (result == null || sign * comparator.compare(value, result) > 0)) {
+                result = value;
+            }
+        }
+        return (V) result;
+    }
+
+    private static boolean isMonotoneLong(final List<?> values) {
+        for (int i = 0; i < values.size(); i++) {
+            final Object value = values.get(i);
+            if (!(value instanceof Long)) {
+                return false;
+            }
+            // 差值溢出时也不能压缩
+            if (i > 0 && (Long) value - (Long) values.get(i - 1) < 0) {
+                return false;
+            }
+        }
+        return !values.isEmpty();
+    }
+
+    private static boolean isInteger(final List<?> values) {
+        for (final Object value : values) {
+            if (value != null && !(value instanceof Integer)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Long> castLongs(final List<?> values) {
+        return (List<Long>) values;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Integer> castIntegers(final List<?> values) {
+        return (List<Integer>) values;
+    }
+
+    private static int bitWidth(final long maxCode) {
+        return 64 - Long.numberOfLeadingZeros(maxCode);
+    }
+
+    /**
+     * 每个值占width位的无符号整数数组
+     */
+    static final class BitPacked {
+        private final long[] words;
+        private final int width;
+        private final long mask;
+
+        BitPacked(final int size, final int width) {
+            this.words = new long[Math.max(1, (int) (((long) size * width + 63) >>> 6))];
+            this.width = width;
+            this.mask = width == 64 ? -1L : (1L << width) - 1;
+        }
+
+        void set(final int i, final long value) {
+            final long bit = (long) i * width;
+            final int w = (int) (bit >>> 6);
+            final int off = (int) (bit & 63);
+            words[w] |= value << off;
+            if (off + width > 64) {
+                words[w + 1] |= value >>> (64 - off);
+            }
+        }
+
+        long get(final int i) {
+            if (width == 0) {
+                return 0L;
+            }
+            final long bit = (long) i * width;
+            final int w = (int) (bit >>> 6);
+            final int off = (int) (bit & 63);
+            long value = words[w] >>> off;
+            if (off + width > 64) {
+                value |= words[w + 1] << (64 - off);
+            }
+            return value & mask;
+        }
+
+        long sizeInBytes() {
+            return 16L + 8L * words.length;
+        }
+    }
+
+    /**
+     * 行程编码，ends[i]为第i段结束(不包含)的行索引
+     */
+    static final class RunLength<V> extends EncodedColumn<V> {
+        private final Object[] values;
+        private final int[] ends;
+
+        RunLength(final List<? extends V> data) {
+            final List<Object> values = new ArrayList<>();
+            final List<Integer> ends = new ArrayList<>();
+            for (int i = 0; i < data.size(); i++) {
+                final V value = data.get(i);
+                if (i == 0 || !Objects.equals(values.get(values.size() - 1), value)) {
+                    values.add(value);
+                    ends.add(i + 1);
+                } else {
+                    ends.set(ends.size() - 1, i + 1);
+                }
+            }
+            this.values = values.toArray();
+            this.ends = new int[ends.size()];
+            for (int r = 0; r < this.ends.length; r++) {
+                this.ends[r] = ends.get(r);
+            }
+        }
+
+        static long sizeInBytes(final int runs) {
+            return 32L + 24L * runs;
+        }
+
+        @Override
+        public Encoding getEncoding() {
+            return Encoding.RLE;
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return sizeInBytes(ends.length);
+        }
+
+        @Override
+        public int size() {
+            return ends.length == 0 ? 0 : ends[ends.length - 1];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V get(final int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            final int run = Arrays.binarySearch(ends, index + 1);
+            return (V) values[run >= 0 ? run : -run - 1];
+        }
+
+        private int start(final int run) {
+            return run == 0 ? 0 : ends[run - 1];
+        }
+
+        @Override
+        public ColumnType type() {
+            return ColumnType.of(Arrays.asList(values));
+        }
+
+        @Override
+        public int count() {
+            final ColumnType type = type();
+            int count = 0;
+            for (int r = 0; r < ends.length; r++) {
+                count += Double.isNaN(type.toDouble(values[r])) ? 0 : ends[r] - start(r);
+            }
+            return count;
+        }
+
+        @Override
+        public double sum() {
+            final ColumnType type = type();
+            double sum = 0d;
+            for (int r = 0; r < ends.length; r++) {
+                final double x = type.toDouble(values[r]);
+                sum += Double.isNaN(x) ? 0d : x * (ends[r] - start(r));
+            }
+            return sum;
+        }
+
+        @Override
+        public double sumOfSquares(final double mean) {
+            final ColumnType type = type();
+            double sum = 0d;
+            for (int r = 0; r < ends.length; r++) {
+                final double x = type.toDouble(values[r]);
+                sum += Double.isNaN(x) ? 0d : (x - mean) * (x - mean) * (ends[r] - start(r));
+            }
+            return sum;
+        }
+
+        @Override
+        public V min() {
+            return extreme(Arrays.asList(values), -1);
+        }
+
+        @Override
+        public V max() {
+            return extreme(Arrays.asList(values), 1);
+        }
+
+        @Override
+        public List<Integer> indicesOf(final Object key) {
+            final ColumnType type = ColumnType.of(Arrays.asList(values), Collections.singletonList(key));
+            final Object k = type.key(key);
+            final List<Integer> rows = new ArrayList<>();
+            for (int r = 0; r < ends.length; r++) {
+                if (Objects.equals(type.key(values[r]), k)) {
+                    for (int i = start(r); i < ends[r]; i++) {
+                        rows.add(i);
+                    }
+                }
+            }
+            return rows;
+        }
+
+        @Override
+        public List<Integer> indicesBetween(final Object lo, final Object hi) {
+            final Comparator<Object> comparator = ColumnType.of(Arrays.asList(values), Arrays.asList(lo, hi)).comparator();
+            final List<Integer> rows = new ArrayList<>();
+            for (int r = 0; r < ends.length; r++) {
+                if (between(comparator, values[r], lo, hi)) {
+                    for (int i = start(r); i < ends[r]; i++) {
+                        rows.add(i);
+                    }
+                }
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * 单调不减的Long，保存与前一个值的差，每BLOCK个值保存一个完整的值用于随机读取
+     */
+    static final class Delta extends EncodedColumn<Long> {
+        private static final int SHIFT = 6;
+        private static final int BLOCK = 1 << SHIFT;
+
+        private final int size;
+        private final long[] checkpoints;
+        private final BitPacked deltas;
+
+        Delta(final List<Long> data) {
+            size = data.size();
+            checkpoints = new long[(size + BLOCK - 1) >>> SHIFT];
+            long maxDelta = 0;
+            for (int i = 1; i < size; i++) {
+                maxDelta = Math.max(maxDelta, data.get(i) - data.get(i - 1));
+            }
+            deltas = new BitPacked(size, bitWidth(maxDelta));
+            for (int i = 0; i < size; i++) {
+                if ((i & (BLOCK - 1)) == 0) {
+                    checkpoints[i >>> SHIFT] = data.get(i);
+                } else {
+                    deltas.set(i, data.get(i) - data.get(i - 1));
+                }
+            }
+        }
+
+        @Override
+        public Encoding getEncoding() {
+            return Encoding.DELTA;
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return 32L + 8L * checkpoints.length + deltas.sizeInBytes();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Long get(final int index) {
+            return value(index);
+        }
+
+        private long value(final int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            long value = checkpoints[index >>> SHIFT];
+            for (int i = (index & ~(BLOCK - 1)) + 1; i <= index; i++) {
+                value += deltas.get(i);
+            }
+            return value;
+        }
+
+        @Override
+        public Iterator<Long> iterator() {
+            return listIterator(0);
+        }
+
+        /**
+         * 顺序读取时在前一个值上累加差值，不需要每次从checkpoint开始计算
+         */
+        @Override
+        public ListIterator<Long> listIterator(final int index) {
+            if (index < 0 || index > size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return new ListIterator<Long>() {
+                private int cursor = index;
+                // 最近一次计算出的值及其行索引
+                private int pos = -1;
+                private long current;
+
+                private long decode(final int i) {
+                    if (pos == i - 1 && (i & (BLOCK - 1)) != 0) {
+                        current += deltas.get(i);
+                    } else if (pos == i + 1 && (pos & (BLOCK - 1)) != 0) {
+                        current -= deltas.get(pos);
+                    } else if (pos != i) {
+                        current = value(i);
+                    }
+                    pos = i;
+                    return current;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return cursor < size;
+                }
+
+                @Override
+                public Long next() {
+                    if (cursor >= size) {
+                        throw new NoSuchElementException();
+                    }
+                    return decode(cursor++);
+                }
+
+                @Override
+                public boolean hasPrevious() {
+                    return cursor > 0;
+                }
+
+                @Override
+                public Long previous() {
+                    if (cursor <= 0) {
+                        throw new NoSuchElementException();
+                    }
+                    return decode(--cursor);
+                }
+
+                @Override
+                public int nextIndex() {
+                    return cursor;
+                }
+
+                @Override
+                public int previousIndex() {
+                    return cursor - 1;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void set(final Long value) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void add(final Long value) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public ColumnType type() {
+            return ColumnType.LONG;
+        }
+
+        @Override
+        public int count() {
+            return size;
+        }
+
+        /**
+         * 顺序解压，不装箱
+         */
+        @Override
+        public double sum() {
+            double sum = 0d;
+            long value = 0L;
+            for (int i = 0; i < size; i++) {
+                value = (i & (BLOCK - 1)) == 0 ? checkpoints[i >>> SHIFT] : value + deltas.get(i);
+                sum += value;
+            }
+            return sum;
+        }
+
+        @Override
+        public double sumOfSquares(final double mean) {
+            double sum = 0d;
+            long value = 0L;
+            for (int i = 0; i < size; i++) {
+                value = (i & (BLOCK - 1)) == 0 ? checkpoints[i >>> SHIFT] : value + deltas.get(i);
+                sum += (value - mean) * (value - mean);
+            }
+            return sum;
+        }
+
+        @Override
+        public Long min() {
+            return value(0);
+        }
+
+        @Override
+        public Long max() {
+            return value(size - 1);
+        }
+
+        /**
+         * 第一个大于等于key(strict为true时大于key)的行索引
+         */
+        private int lowerBound(final long key, final boolean strict) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                final int mid = (lo + hi) >>> 1;
+                final long value = value(mid);
+                if (value < key || (strict && value == key)) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        private static List<Integer> rows(final int from, final int to) {
+            final List<Integer> rows = new ArrayList<>(Math.max(0, to - from));
+            for (int i = from; i < to; i++) {
+                rows.add(i);
+            }
+            return rows;
+        }
+
+        @Override
+        public List<Integer> indicesOf(final Object key) {
+            if (!(key instanceof Long)) {
+                return super.indicesOf(key);
+            }
+            return rows(lowerBound((Long) key, false), lowerBound((Long) key, true));
+        }
+
+        @Override
+        public List<Integer> indicesBetween(final Object lo, final Object hi) {
+            if ((lo != null && !(lo instanceof Long)) || (hi != null && !(hi instanceof Long))) {
+                return super.indicesBetween(lo, hi);
+            }
+            return rows(lo == null ? 0 : lowerBound((Long) lo, false), hi == null ? size : lowerBound((Long) hi, true));
+        }
+    }
+
+    /**
+     * Integer存为(value - min + 1)，0表示null
+     */
+    static final class FrameOfReference extends EncodedColumn<Integer> {
+        private final int size;
+        private final long reference;
+        private final long maxCode;
+        private final BitPacked codes;
+
+        FrameOfReference(final List<Integer> data) {
+            size = data.size();
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (final Integer value : data) {
+                if (value != null) {
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+            }
+            reference = min == Long.MAX_VALUE ? 0L : min;
+            maxCode = min == Long.MAX_VALUE ? 0L : max - min + 1;
+            codes = new BitPacked(size, bitWidth(maxCode));
+            for (int i = 0; i < size; i++) {
+                final Integer value = data.get(i);
+                if (value != null) {
+                    codes.set(i, value - reference + 1);
+                }
+            }
+        }
+
+        @Override
+        public Encoding getEncoding() {
+            return Encoding.FOR;
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return 40L + codes.sizeInBytes();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Integer get(final int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            final long code = codes.get(index);
+            return code == 0 ? null : (int) (reference + code - 1);
+        }
+
+        @Override
+        public ColumnType type() {
+            return maxCode == 0 ? ColumnType.EMPTY : ColumnType.INTEGER;
+        }
+
+        @Override
+        public int count() {
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                count += codes.get(i) == 0 ? 0 : 1;
+            }
+            return count;
+        }
+
+        /**
+         * 在编码上累加，值为reference + code - 1
+         */
+        @Override
+        public double sum() {
+            double sum = 0d;
+            for (int i = 0; i < size; i++) {
+                final long code = codes.get(i);
+                sum += code == 0 ? 0d : reference + code - 1;
+            }
+            return sum;
+        }
+
+        @Override
+        public double sumOfSquares(final double mean) {
+            double sum = 0d;
+            for (int i = 0; i < size; i++) {
+                final long code = codes.get(i);
+                if (code != 0) {
+                    final double x = reference + code - 1 - mean;
+                    sum += x * x;
+                }
+            }
+            return sum;
+        }
+
+        @Override
+        public Integer min() {
+            return maxCode == 0 ? null : (int) reference;
+        }
+
+        @Override
+        public Integer max() {
+            return maxCode == 0 ? null : (int) (reference + maxCode - 1);
+        }
+
+        private List<Integer> codesBetween(final long lo, final long hi) {
+            final List<Integer> rows = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                final long code = codes.get(i);
+                if (code != 0 && code >= lo && code <= hi) {
+                    rows.add(i);
+                }
+            }
+            return rows;
+        }
+
+        @Override
+        public List<Integer> indicesOf(final Object key) {
+            if (!(key instanceof Integer)) {
+                return super.indicesOf(key);
+            }
+            final long code = (Integer) key - reference + 1;
+            return code < 1 || code > maxCode ? new ArrayList<Integer>() : codesBetween(code, code);
+        }
+
+        @Override
+        public List<Integer> indicesBetween(final Object lo, final Object hi) {
+            if ((lo != null && !(lo instanceof Integer)) || (hi != null && !(hi instanceof Integer))) {
+                return super.indicesBetween(lo, hi);
+            }
+            return codesBetween(lo == null ? 1L : (Integer) lo - reference + 1, hi == null ? maxCode : (Integer) hi - reference + 1);
+        }
+    }
+}
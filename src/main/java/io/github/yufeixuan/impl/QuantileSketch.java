@@ -0,0 +1,148 @@
+package io.github.yufeixuan.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 流式分位数估计(KLL sketch)，只保存O(k log n)个值。
+ *
+ * <p>第h层的每个值代表2^h个原始值，某层写满时排序后随机保留奇数位或偶数位
+ * 的一半提升到上一层。k越大越精确，默认的k=200时秩误差约为1%。
+ * 最小值和最大值精确记录。</p>
+ */
+public class QuantileSketch {
+    public static final int DEFAULT_K = 200;
+    private static final double DECAY = 2.0 / 3.0;
+
+    private final int k;
+    private final List<Level> levels = new ArrayList<>();
+    // 固定种子，相同的输入得到相同的结果
+    private final Random random = new Random(1L);
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    public QuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    public QuantileSketch(final int k) {
+        if (k < 8) {
+            throw new IllegalArgumentException("k不能小于8: " + k);
+        }
+        this.k = k;
+        levels.add(new Level());
+    }
+
+    public void update(final double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (count++ == 0) {
+            min = value;
+            max = value;
+        } else {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        levels.get(0).add(value);
+        if (levels.get(0).size >= capacity(0)) {
+            compress();
+        }
+    }
+
+    public long count() {
+        return count;
+    }
+
+    /**
+     * 估计的q分位数，没有数据时返回NaN
+     * @param q 0到1之间
+     */
+    public double quantile(final double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("分位数必须在0到1之间: " + q);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (q == 0) {
+            return min;
+        }
+        if (q == 1) {
+            return max;
+        }
+
+        int size = 0;
+        for (final Level level : levels) {
+            size += level.size;
+        }
+        final double[] values = new double[size];
+        final long[] weights = new long[size];
+        final Integer[] order = new Integer[size];
+        long total = 0;
+        int i = 0;
+        for (int h = 0; h < levels.size(); h++) {
+            final Level level = levels.get(h);
+            for (int j = 0; j < level.size; j++) {
+                values[i] = level.items[j];
+                weights[i] = 1L << h;
+                order[i] = i;
+                total += weights[i];
+                i++;
+            }
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+
+        final double target = q * total;
+        long cumulative = 0;
+        for (final int o : order) {
+            cumulative += weights[o];
+            if (cumulative >= target) {
+                return values[o];
+            }
+        }
+        return max;
+    }
+
+    private int capacity(final int h) {
+        return Math.max(2, (int) Math.ceil(k * Math.pow(DECAY, levels.size() - 1 - h)));
+    }
+
+    /**
+     * 从低到高把写满的层的一半提升到上一层，上一层因此写满时继续向上
+     */
+    private void compress() {
+        for (int h = 0; h < levels.size(); h++) {
+            final Level level = levels.get(h);
+            if (level.size < capacity(h)) {
+                continue;
+            }
+            if (h + 1 == levels.size()) {
+                levels.add(new Level());
+            }
+            final Level next = levels.get(h + 1);
+            Arrays.sort(level.items, 0, level.size);
+            // 个数为奇数时第一个值留在本层，保证提升的值成对
+            final int keep = level.size % 2;
+            for (int j = keep + (random.nextBoolean() ? 1 : 0); j < level.size; j += 2) {
+                next.add(level.items[j]);
+            }
+            level.size = keep;
+        }
+    }
+
+    private static final class Level {
+        private double[] items = new double[16];
+        private int size;
+
+        private void add(final double value) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = value;
+        }
+    }
+}
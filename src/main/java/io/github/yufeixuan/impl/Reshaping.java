@@ -0,0 +1,208 @@
+package io.github.yufeixuan.impl;
+
+import io.github.yufeixuan.DataFrame;
+import io.github.yufeixuan.DataFrame.Aggregation;
+
+import java.util.*;
+
+/**
+ * 长表和宽表之间的转换，输出列按最终大小一次性分配
+ */
+public class Reshaping {
+
+    /**
+     * 第一遍得到不同的行和列，第二遍把值聚合到预先分配好的单元格中。
+     * 行和列按第一次出现的顺序排列，数值相等的值(例如Integer的1和Long的1)属于同一行或同一列
+     */
+    public static <V> DataFrame<V> pivot(final DataFrame<V> df, final Object index, final Object columns, final Object values, final Aggregation agg) {
+        final int indexCol = colIndex(df, index);
+        final int columnsCol = colIndex(df, columns);
+        final int valuesCol = colIndex(df, values);
+
+        final List<V> rowKeys = new ArrayList<>();
+        final int[] rowIds = ids(df.columnView(indexCol), rowKeys);
+        final List<V> colKeys = new ArrayList<>();
+        final int[] colIds = ids(df.columnView(columnsCol), colKeys);
+        if (colKeys.contains(index)) {
+            throw new IllegalArgumentException("columns列的值与index列名重复:" + index);
+        }
+        final int rows = rowKeys.size();
+        if ((long) rows * colKeys.size() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("pivot的结果过大: " + rows + "行, " + colKeys.size() + "列");
+        }
+
+        // 单元格按列连续存放，第c列第r行为c * rows + r
+        final Cells<V> cells = new Cells<>(agg, ColumnType.of(df, valuesCol), rows * colKeys.size());
+        int r = 0;
+        for (final V val : df.columnView(valuesCol)) {
+            cells.add(colIds[r] * rows + rowIds[r], val);
+            r++;
+        }
+
+        final LinkedList<Object> names = new LinkedList<>();
+        final ArrayList<List<V>> blocks = new ArrayList<>(colKeys.size() + 1);
+        names.add(index);
+        blocks.add(rowKeys);
+        for (int c = 0; c < colKeys.size(); c++) {
+            final List<V> block = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                block.add(cells.result(c * rows + i));
+            }
+            names.add(colKeys.get(c));
+            blocks.add(block);
+        }
+
+        return new DataFrame<>(names, BlockManager.of(blocks));
+    }
+
+    /**
+     * 给column中每个不同的值按第一次出现的顺序编号，返回每行的编号，不同的值按顺序放入keys
+     */
+    private static <V> int[] ids(final List<V> column, final List<V> keys) {
+        final ColumnType type = ColumnType.of(column);
+        final Map<Object, Integer> ids = new HashMap<>();
+        final int[] result = new int[column.size()];
+        int r = 0;
+        for (final V value : column) {
+            final Object key = type.key(value);
+            Integer id = ids.get(key);
+            if (id == null) {
+                id = keys.size();
+                ids.put(key, id);
+                keys.add(value);
+            }
+            result[r++] = id;
+        }
+        return result;
+    }
+
+    public static <V> DataFrame<V> melt(final DataFrame<V> df, final List<Object> idVars, final List<Object> valueVars, final Object varName, final Object valueName) {
+        final List<Object> vars = new ArrayList<>(valueVars);
+        if (vars.isEmpty()) {
+            for (final Object col : df.getColumns()) {
+                if (!idVars.contains(col)) {
+                    vars.add(col);
+                }
+            }
+        }
+
+        final int len = df.length();
+        final int rows = len * vars.size();
+        final LinkedList<Object> names = new LinkedList<>();
+        final ArrayList<List<V>> blocks = new ArrayList<>(idVars.size() + 2);
+
+        for (final Object id : idVars) {
+            final List<V> source = df.columnView(colIndex(df, id));
+            final List<V> block = new ArrayList<>(rows);
+            for (int i = 0; i < vars.size(); i++) {
+                block.addAll(source);
+            }
+            names.add(id);
+            blocks.add(block);
+        }
+
+        final List<V> variable = new ArrayList<>(rows);
+        final List<V> value = new ArrayList<>(rows);
+        for (final Object var : vars) {
+            @SuppressWarnings("unchecked")
+            final V name = (V) var;
+            variable.addAll(Collections.nCopies(len, name));
+            value.addAll(df.columnView(colIndex(df, var)));
+        }
+        names.add(varName);
+        blocks.add(variable);
+        names.add(valueName);
+        blocks.add(value);
+
+        return new DataFrame<>(names, BlockManager.of(blocks));
+    }
+
+    private static int colIndex(final DataFrame<?> df, final Object col) {
+        final Integer colIndex = df.getColIndex(col);
+        if (colIndex == null) {
+            throw new IllegalArgumentException("列名不存在:" + col);
+        }
+        return colIndex;
+    }
+
+    /**
+     * 所有单元格的聚合状态，只分配聚合方式需要的数组，null值不参与聚合
+     */
+    private static final class Cells<V> {
+        private final Aggregation agg;
+        private final ColumnType type;
+        private final Comparator<Object> comparator;
+        private final int[] counts;
+
+        /**
+         * COUNT时记录单元格是否有对应的行，没有行的单元格为null，只有null值的单元格为0
+         */
+        private final boolean[] present;
+        private final double[] sums;
+        private final Object[] values;
+
+        /**
+         * @param type values列的类型，用于比较和数值转换
+         */
+        private Cells(final Aggregation agg, final ColumnType type, final int size) {
+            this.agg = agg;
+            this.type = type;
+            this.comparator = type.comparator();
+            this.counts = new int[size];
+            this.present = agg == Aggregation.COUNT ? new boolean[size] : null;
+            this.sums = agg == Aggregation.SUM || agg == Aggregation.MEAN ? new double[size] : null;
+            this.values = sums == null && present == null ? new Object[size] : null;
+        }
+
+        private void add(final int cell, final V val) {
+            if (present != null) {
+                present[cell] = true;
+            }
+            if (val == null) {
+                return;
+            }
+            switch (agg) {
+                case FIRST:
+                    if (counts[cell] == 0) {
+                        values[cell] = val;
+                    }
+                    break;
+                case LAST:
+                    values[cell] = val;
+                    break;
+                case SUM:
+                case MEAN:
+                    sums[cell] += type.toDouble(val);
+                    break;
+                case MIN:
+                    if (counts[cell] == 0 || comparator.compare(val, values[cell]) < 0) {
+                        values[cell] = val;
+                    }
+                    break;
+                case MAX:
+                    if (counts[cell] == 0 || comparator.compare(val, values[cell]) > 0) {
+                        values[cell] = val;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            counts[cell]++;
+        }
+
+        @SuppressWarnings("unchecked")
+        private V result(final int cell) {
+            final int count = counts[cell];
+            switch (agg) {
+                case COUNT:
+                    return present[cell] ? (V) Integer.valueOf(count) : null;
+                case SUM:
+                    return count == 0 ? null : (V) Double.valueOf(sums[cell]);
+                case MEAN:
+                    return count == 0 ? null : (V) Double.valueOf(sums[cell] / count);
+                default:
+                    return (V) values[cell];
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package io.github.yufeixuan.impl;
+
+import io.github.yufeixuan.DataFrame.IndexType;
+import io.github.yufeixuan.metrics.Metrics;
+
+import java.util.*;
+
+/**
+ * 按值查询行索引，DataFrame和FrozenDataFrame共用。
+ *
+ * <p>有可用的二级索引时查询索引，压缩的列直接在压缩数据上查询，否则遍历整列。
+ * 三种方式中数值相等的值都视为相等，例如Integer列中查询Long。</p>
+ */
+public class Searching {
+
+    /**
+     * 返回block中值等于key的所有行索引
+     * @param block 列数据，只读取
+     * @param rowIndex 该列的二级索引，没有时为null
+     */
+    public static <V> List<Integer> lookup(final List<V> block, final ColumnIndex<V> rowIndex, final Object key, final Metrics.Timer timer) {
+        if (rowIndex != null && rowIndex.supports(Collections.singletonList(key))) {
+            Metrics.strategy(timer, "index");
+            return rowIndex.lookup(key);
+        }
+
+        if (block instanceof EncodedColumn) {
+            Metrics.strategy(timer, "encoded");
+            return ((EncodedColumn<V>) block).indicesOf(key);
+        }
+
+        Metrics.strategy(timer, "scan");
+        final ColumnType type = ColumnType.of(block, Collections.singletonList(key));
+        final Object k = type.key(key);
+        final List<Integer> rows = new ArrayList<>();
+        final int len = block.size();
+        for (int i = 0; i < len; i++) {
+            if (Objects.equals(type.key(block.get(i)), k)) {
+                rows.add(i);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 返回block中值在[lo, hi]之间的所有行索引，不包含null值，lo或hi为null时不限制该边界。
+     * 使用SORTED索引时按值从小到大返回，否则按行顺序返回
+     * @param block 列数据，只读取
+     * @param rowIndex 该列的二级索引，没有时为null
+     */
+    public static <V> List<Integer> range(final List<V> block, final ColumnIndex<V> rowIndex, final Object lo, final Object hi, final Metrics.Timer timer) {
+        if (rowIndex != null && rowIndex.getType() == IndexType.SORTED && rowIndex.supports(Arrays.asList(lo, hi))) {
+            Metrics.strategy(timer, "index");
+            return rowIndex.range(lo, hi);
+        }
+
+        if (block instanceof EncodedColumn) {
+            Metrics.strategy(timer, "encoded");
+            return ((EncodedColumn<V>) block).indicesBetween(lo, hi);
+        }
+
+        Metrics.strategy(timer, "scan");
+        final Comparator<Object> comparator = ColumnType.of(block, Arrays.asList(lo, hi)).comparator();
+        final List<Integer> rows = new ArrayList<>();
+        final int len = block.size();
+        for (int i = 0; i < len; i++) {
+            final V val = block.get(i);
+            if (val != null
+                && (lo == null || comparator.compare(val, lo) >= 0)
+                && (hi == null || comparator.compare(val, hi) <= 0)) {
+                rows.add(i);
+            }
+        }
+        return rows;
+    }
+}
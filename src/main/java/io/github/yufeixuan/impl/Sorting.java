@@ -21,55 +21,172 @@ package io.github.yufeixuan.impl;
 import io.github.yufeixuan.DataFrame;
 import io.github.yufeixuan.DataFrame.SortDirection;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * 排序。行顺序用int[]保存并用稳定的归并排序计算，排序列不复制，
+ * 结果逐列按总行数一次分配，不逐行append。
+ */
 public class Sorting {
+
+    /**
+     * 按行索引比较两行，避免把行索引装箱
+     */
+    public interface RowComparator {
+        int compare(int r1, int r2);
+    }
+
+    private static final int INSERTION_SORT_THRESHOLD = 7;
+
     public static <V> DataFrame<V> sort(
             final DataFrame<V> df, final Map<Integer, SortDirection> cols) {
-            final Comparator<List<V>> comparator = new Comparator<List<V>>() {
-                @Override
-                @SuppressWarnings("unchecked")
-                public int compare(final List<V> r1, final List<V> r2) {
-                    int result = 0;
-                    for (final Map.Entry<Integer, SortDirection> col : cols.entrySet()) {
-                        final int c = col.getKey();
-                        final Comparable<V> v1 = Comparable.class.cast(r1.get(c));
-                        final V v2 = r2.get(c);
-                        result = v1.compareTo(v2);
-                        result *= col.getValue() == SortDirection.DESCENDING ? -1 : 1;
-                        if (result != 0) {
-                            break;
-                        }
-                    }
-                    return result;
-                }
-            };
-        return sort(df, comparator);
+        // 开启缓存时，排序列的数据没有变化就直接使用上次的行顺序
+        final long[] versions = new long[cols.size()];
+        int i = 0;
+        for (final int col : cols.keySet()) {
+            versions[i++] = df.version(col);
+        }
+        final int[] rows = DerivedCache.computeIfAbsent(
+            Arrays.asList("sort", new ArrayList<>(cols.values())), versions, () -> permutation(df, cols));
+        return reorder(df, rows);
     }
 
-    public static <V> DataFrame<V> sort(final DataFrame<V> df, final Comparator<List<V>> comparator) {
-        final DataFrame<V> sorted = new DataFrame<V>(df.getColumns());
-        final Comparator<Integer> cmp = new Comparator<Integer>() {
+    /**
+     * 按rows的顺序重排所有列。每列顺序读取一遍原来的数据写到新的位置，
+     * 压缩的列也只顺序解压一次
+     */
+    public static <V> DataFrame<V> reorder(final DataFrame<V> df, final int[] rows) {
+        final int len = rows.length;
+        final int[] target = new int[len];
+        for (int i = 0; i < len; i++) {
+            target[rows[i]] = i;
+        }
+        final int width = df.getColumns().size();
+        final ArrayList<List<V>> blocks = new ArrayList<>(width);
+        for (int c = 0; c < width; c++) {
+            final List<V> block = new ArrayList<>(Collections.<V>nCopies(len, null));
+            int r = 0;
+            for (final V value : df.columnView(c)) {
+                block.set(target[r++], value);
+            }
+            blocks.add(block);
+        }
+        return new DataFrame<>(new LinkedList<>(df.getColumns()), BlockManager.of(blocks));
+    }
+
+    /**
+     * 排序后的行顺序
+     */
+    public static <V> int[] permutation(final DataFrame<V> df, final Map<Integer, SortDirection> cols) {
+        final int len = df.length();
+        final int[] rows = new int[len];
+        for (int r = 0; r < len; r++) {
+            rows[r] = r;
+        }
+        sort(rows, 0, len, comparator(df, cols));
+        return rows;
+    }
+
+    /**
+     * 按排序列比较两行，每个排序列的类型在创建时确定一次。
+     * 直接读取列数据，只有压缩的列先顺序解压一次，避免随机读取时重复解码
+     */
+    public static <V> RowComparator comparator(final DataFrame<V> df, final Map<Integer, SortDirection> cols) {
+        final List<?>[] keys = new List<?>[cols.size()];
+        final List<Comparator<Object>> comparators = new ArrayList<>(cols.size());
+        int i = 0;
+        for (final Map.Entry<Integer, SortDirection> col : cols.entrySet()) {
+            List<?> column = df.columnView(col.getKey());
+            if (column instanceof EncodedColumn) {
+                column = Arrays.asList(column.toArray());
+            }
+            keys[i++] = column;
+            comparators.add(direction(ColumnType.of(column).comparator(), col.getValue()));
+        }
+
+        return new RowComparator() {
             @Override
-            public int compare(final Integer r1, final Integer r2) {
-                return comparator.compare(df.row(r1),  df.row(r2));
+            public int compare(final int r1, final int r2) {
+                for (int c = 0; c < keys.length; c++) {
+                    final int result = comparators.get(c).compare(keys[c].get(r1), keys[c].get(r2));
+                    if (result != 0) {
+                        return result;
+                    }
+                }
+                return 0;
             }
         };
+    }
 
-        final Integer[] rows = new Integer[df.length()];
-        for (int r = 0; r < df.length(); r++) {
-            rows[r] = r;
+    /**
+     * 稳定的归并排序，相等的行保持原来的顺序，与Arrays.sort(Object[])的结果相同
+     */
+    public static void sort(final int[] rows, final int from, final int to, final RowComparator cmp) {
+        final int[] aux = Arrays.copyOfRange(rows, from, to);
+        mergeSort(aux, rows, from, to, -from, cmp);
+    }
+
+    /**
+     * 把src[low + off, high + off)排好序写到dest[low, high)，src和dest在每层递归中交换
+     */
+    private static void mergeSort(final int[] src, final int[] dest, int low, int high, final int off, final RowComparator cmp) {
+        final int length = high - low;
+        if (length < INSERTION_SORT_THRESHOLD) {
+            for (int i = low; i < high; i++) {
+                for (int j = i; j > low && cmp.compare(dest[j - 1], dest[j]) > 0; j--) {
+                    final int t = dest[j];
+                    dest[j] = dest[j - 1];
+                    dest[j - 1] = t;
+                }
+            }
+            return;
         }
-        Arrays.sort(rows, cmp);
 
-        for (final Integer r : rows) {
-            sorted.append(df.row(r));
+        final int destLow = low;
+        final int destHigh = high;
+        low += off;
+        high += off;
+        final int mid = (low + high) >>> 1;
+        mergeSort(dest, src, low, mid, -off, cmp);
+        mergeSort(dest, src, mid, high, -off, cmp);
+
+        // 两半已经有序时直接复制
+        if (cmp.compare(src[mid - 1], src[mid]) <= 0) {
+            System.arraycopy(src, low, dest, destLow, length);
+            return;
         }
+        for (int i = destLow, p = low, q = mid; i < destHigh; i++) {
+            if (q >= high || p < mid && cmp.compare(src[p], src[q]) <= 0) {
+                dest[i] = src[p++];
+            } else {
+                dest[i] = src[q++];
+            }
+        }
+    }
+
+    private static Comparator<Object> direction(final Comparator<Object> comparator, final SortDirection dir) {
+        return dir == SortDirection.DESCENDING ? comparator.reversed() : comparator;
+    }
 
-        return sorted;
+    public static <V> DataFrame<V> sort(final DataFrame<V> df, final Comparator<List<V>> comparator) {
+        final int len = df.length();
+        final int[] rows = new int[len];
+        for (int r = 0; r < len; r++) {
+            rows[r] = r;
+        }
+        sort(rows, 0, len, new RowComparator() {
+            @Override
+            public int compare(final int r1, final int r2) {
+                return comparator.compare(df.row(r1), df.row(r2));
+            }
+        });
+        return reorder(df, rows);
     }
 
 }
@@ -0,0 +1,208 @@
+package io.github.yufeixuan.impl;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 溢写到磁盘的临时文件，按行保存数据。
+ *
+ * <p>每个值先写一个字节的类型标记，常用类型直接写二进制数据，
+ * 其他类型使用Java序列化，因此不可序列化的值不能溢写。
+ * 每行可以带一个long类型的序号，用于合并时恢复原来的顺序。
+ * 写入结束后到第一次读取之前不占用文件句柄和缓冲区。</p>
+ */
+public class SpillFile implements Closeable {
+    private static final int NULL = 0;
+    private static final int INTEGER = 1;
+    private static final int LONG = 2;
+    private static final int DOUBLE = 3;
+    private static final int FLOAT = 4;
+    private static final int SHORT = 5;
+    private static final int BYTE = 6;
+    private static final int BOOLEAN = 7;
+    private static final int CHARACTER = 8;
+    private static final int STRING = 9;
+    private static final int BIG_DECIMAL = 10;
+    private static final int BIG_INTEGER = 11;
+    private static final int SERIALIZED = 12;
+
+    private final File file;
+    private final int bufferSize;
+    private DataOutputStream out;
+    private DataInputStream in;
+    private long rows;
+
+    /**
+     * @param prefix 临时文件名的前缀
+     * @param bufferSize 读写缓冲区的字节数
+     */
+    public SpillFile(final String prefix, final int bufferSize) throws IOException {
+        // 由close删除，deleteOnExit会为每个文件保留一条记录直到JVM退出
+        this.file = File.createTempFile(prefix, ".spill");
+        this.bufferSize = bufferSize;
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), bufferSize));
+    }
+
+    public long rows() {
+        return rows;
+    }
+
+    public void write(final long seq, final List<?> row) throws IOException {
+        out.writeLong(seq);
+        out.writeInt(row.size());
+        for (final Object value : row) {
+            writeValue(value);
+        }
+        rows++;
+    }
+
+    /**
+     * 结束写入，之后可以按写入顺序读取
+     */
+    public void finish() throws IOException {
+        out.close();
+        out = null;
+    }
+
+    /**
+     * 读取下一行的序号，必须在每次readRow之前调用
+     */
+    public long readSeq() throws IOException {
+        if (in == null) {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), bufferSize));
+        }
+        return in.readLong();
+    }
+
+    @SuppressWarnings("unchecked")
+    public <V> List<V> readRow() throws IOException {
+        final int size = in.readInt();
+        final List<V> row = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            row.add((V) readValue());
+        }
+        return row;
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (out != null) {
+                out.close();
+            }
+            if (in != null) {
+                in.close();
+            }
+        } catch (final IOException ignored) {
+            // 临时文件，关闭失败不影响结果
+        } finally {
+            file.delete();
+        }
+    }
+
+    private void writeValue(final Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Character) {
+            out.writeByte(CHARACTER);
+            out.writeChar((Character) value);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString((String) value);
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(BIG_DECIMAL);
+            writeString(value.toString());
+        } else if (value instanceof BigInteger) {
+            out.writeByte(BIG_INTEGER);
+            writeString(value.toString());
+        } else {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final ObjectOutputStream oos = new ObjectOutputStream(bytes);
+            oos.writeObject(value);
+            oos.close();
+            out.writeByte(SERIALIZED);
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+        }
+    }
+
+    private Object readValue() throws IOException {
+        final int tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case DOUBLE:
+                return in.readDouble();
+            case FLOAT:
+                return in.readFloat();
+            case SHORT:
+                return in.readShort();
+            case BYTE:
+                return in.readByte();
+            case BOOLEAN:
+                return in.readBoolean();
+            case CHARACTER:
+                return in.readChar();
+            case STRING:
+                return readString();
+            case BIG_DECIMAL:
+                return new BigDecimal(readString());
+            case BIG_INTEGER:
+                return new BigInteger(readString());
+            case SERIALIZED:
+                final byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    return ois.readObject();
+                } catch (final ClassNotFoundException e) {
+                    throw new IOException(e);
+                }
+            default:
+                throw new IOException("unknown value tag: " + tag);
+        }
+    }
+
+    /**
+     * writeUTF限制64K字节，这里用int长度加UTF-8字节
+     */
+    private void writeString(final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private String readString() throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,325 @@
+package io.github.yufeixuan.impl;
+
+import io.github.yufeixuan.DataFrame;
+import io.github.yufeixuan.DataFrame.JoinType;
+import io.github.yufeixuan.DataFrame.KeyFunction;
+import io.github.yufeixuan.DataFrame.SortDirection;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * 限定内存的排序和join，超过内存预算时把中间数据溢写到临时文件。
+ *
+ * <p>排序时每次对预算内的行计算行顺序，按顺序写成一个文件，最后多路归并，
+ * 归并时逐列追加到按总行数分配的列中；join时按key的hash把两边的行分区写入文件，
+ * 逐个分区在内存中join，再按原来的行顺序归并各分区的结果。结果与内存中的排序和join相同。</p>
+ *
+ * <p>预算限制的是排序和join过程中的中间数据：排序的行顺序和解压的排序列、join的hash表，
+ * 以及临时文件的缓冲区。输入和输出的DataFrame仍然全部在内存中。
+ * 临时文件的数量最多为{@value #MAX_FILES}个，预算小到需要更多文件时抛出IllegalArgumentException。</p>
+ */
+public class Spilling {
+    private static final int MAX_FILES = 256;
+    private static final int SAMPLE_ROWS = 256;
+    private static final int MIN_BUFFER = 1 << 10;
+    private static final int MAX_BUFFER = 1 << 16;
+
+    public static <V> DataFrame<V> sort(final DataFrame<V> df, final Map<Integer, SortDirection> cols, final long memoryBudget) {
+        if (fits(memoryBudget, df)) {
+            return Sorting.sort(df, cols);
+        }
+
+        final int len = df.length();
+        final int width = df.getColumns().size();
+        final int runRows = (int) Math.min(len, Math.max(1L, memoryBudget / estimateRowBytes(df)));
+        final int runs = (len + runRows - 1) / runRows;
+        checkFiles(runs, memoryBudget, estimateBytes(df));
+        final int bufferSize = bufferSize(memoryBudget, runs);
+
+        final Sorting.RowComparator comparator = Sorting.comparator(df, cols);
+        final List<List<V>> columns = new ArrayList<>(width);
+        for (int c = 0; c < width; c++) {
+            columns.add(df.columnView(c));
+        }
+        final List<SpillFile> files = new ArrayList<>(runs);
+        try {
+            final int[] rows = new int[runRows];
+            final List<V> row = new ArrayList<>(width);
+            for (int start = 0; start < len; start += runRows) {
+                final int end = Math.min(len, start + runRows);
+                for (int r = start; r < end; r++) {
+                    rows[r - start] = r;
+                }
+                Sorting.sort(rows, 0, end - start, comparator);
+
+                final SpillFile run = new SpillFile("dataframe-sort", bufferSize);
+                files.add(run);
+                for (int i = 0; i < end - start; i++) {
+                    row.clear();
+                    for (final List<V> column : columns) {
+                        row.add(column.get(rows[i]));
+                    }
+                    run.write(rows[i], row);
+                }
+                run.finish();
+            }
+
+            // 序号是原来的行索引，归并时用原来的排序列比较，相等时按行索引保持稳定
+            final List<List<V>> blocks = merge(files, new Comparator<Head<V>>() {
+                @Override
+                public int compare(final Head<V> h1, final Head<V> h2) {
+                    final int result = comparator.compare((int) h1.seq, (int) h2.seq);
+                    return result != 0 ? result : Long.compare(h1.seq, h2.seq);
+                }
+            }, width);
+            return new DataFrame<>(new LinkedList<>(df.getColumns()), BlockManager.of(blocks));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            for (final SpillFile file : files) {
+                file.close();
+            }
+        }
+    }
+
+    public static <V> DataFrame<V> join(final DataFrame<V> left, final DataFrame<V> right, final JoinType how, final String joinKey, final KeyFunction<V> on, final long memoryBudget) {
+        if (fits(memoryBudget, left, right)) {
+            return Combining.join(left, right, how, joinKey, on);
+        }
+
+        final Integer lColIndex = left.getColIndex(joinKey);
+        final Integer rColIndex = right.getColIndex(joinKey);
+        if (lColIndex == null || rColIndex == null) {
+            throw new IllegalArgumentException("joinKey不存在: " + joinKey);
+        }
+
+        final long bytes = estimateBytes(left) + estimateBytes(right);
+        final long needed = Math.max(2L, (bytes + memoryBudget - 1) / Math.max(1L, memoryBudget));
+        checkFiles(needed, memoryBudget, bytes);
+        final int partitions = (int) needed;
+        // 分区时一侧的所有文件同时写入，归并时所有输出文件同时读取
+        final int bufferSize = bufferSize(memoryBudget, partitions);
+        final List<SpillFile> files = new ArrayList<>();
+        try {
+            final SpillFile[] leftParts = partition(left, 0, on, partitions, bufferSize, files);
+            final SpillFile[] rightParts = partition(right, 1, on, partitions, bufferSize, files);
+            final List<SpillFile> outputs = new ArrayList<>(partitions);
+
+            for (int p = 0; p < partitions; p++) {
+                final Map<Object, Entry<V>> leftMap = load(leftParts[p], 0, on);
+                final Map<Object, Entry<V>> rightMap = load(rightParts[p], 1, on);
+                leftParts[p].close();
+                rightParts[p].close();
+
+                final SpillFile out = new SpillFile("dataframe-join", bufferSize);
+                files.add(out);
+                outputs.add(out);
+
+                // 与Combining.join相同的输出规则，序号用于恢复原来的行顺序
+                for (final Map.Entry<Object, Entry<V>> entry : how != JoinType.RIGHT ? leftMap.entrySet() : rightMap.entrySet()) {
+                    final List<V> tmp = new ArrayList<>(entry.getValue().row);
+                    final Entry<V> other = how != JoinType.RIGHT ? rightMap.get(entry.getKey()) : leftMap.get(entry.getKey());
+                    if (other != null || how != JoinType.INNER) {
+                        tmp.addAll(other != null ? other.row : Collections.<V>nCopies(
+                            how != JoinType.RIGHT ? right.getColumns().size() : left.getColumns().size(), null));
+                        out.write(entry.getValue().seq, tmp);
+                    }
+                }
+
+                if (how == JoinType.OUTER) {
+                    for (final Map.Entry<Object, Entry<V>> entry : rightMap.entrySet()) {
+                        if (leftMap.get(entry.getKey()) == null) {
+                            final List<V> tmp = new ArrayList<>(Collections.<V>nCopies(left.getColumns().size(), null));
+                            tmp.set(lColIndex, entry.getValue().row.get(rColIndex));
+                            tmp.addAll(entry.getValue().row);
+                            out.write(left.length() + entry.getValue().seq, tmp);
+                        }
+                    }
+                }
+                out.finish();
+            }
+
+            final LinkedList<Object> names = Combining.joinColumns(left, right, how);
+            final List<List<V>> blocks = merge(outputs, new Comparator<Head<V>>() {
+                @Override
+                public int compare(final Head<V> h1, final Head<V> h2) {
+                    return Long.compare(h1.seq, h2.seq);
+                }
+            }, names.size());
+            final DataFrame<V> df = new DataFrame<>(names, BlockManager.of(blocks));
+
+            df.rename(String.format("%s_%s", joinKey, "left"), joinKey).drop(String.format("%s_%s", joinKey, "right"));
+            return df;
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            for (final SpillFile file : files) {
+                file.close();
+            }
+        }
+    }
+
+    /**
+     * 估算的内存占用是否在预算之内，在预算之内时直接使用内存中的排序和join
+     */
+    public static boolean fits(final long memoryBudget, final DataFrame<?> ... dfs) {
+        long bytes = 0;
+        for (final DataFrame<?> df : dfs) {
+            bytes += estimateBytes(df);
+        }
+        return bytes <= memoryBudget;
+    }
+
+    private static long estimateBytes(final DataFrame<?> df) {
+        return estimateRowBytes(df) * df.length();
+    }
+
+    /**
+     * 估算每行占用的内存，只抽样部分行
+     */
+    public static long estimateRowBytes(final DataFrame<?> df) {
+        final int len = df.length();
+        final int cols = df.getColumns().size();
+        if (len == 0) {
+            return 16L + 4L * cols;
+        }
+        final int step = Math.max(1, len / SAMPLE_ROWS);
+        long bytes = 0;
+        int sampled = 0;
+        for (int r = 0; r < len; r += step) {
+            for (int c = 0; c < cols; c++) {
+                bytes += estimateValueBytes(df.get(r, c));
+            }
+            sampled++;
+        }
+        // 每个值在列中有一个引用，每行排序或join时还有一个行对象
+        return bytes / sampled + 8L * cols + 32L;
+    }
+
+    /**
+     * 需要的临时文件超过MAX_FILES时，文件数量不能再增加，无法满足预算
+     */
+    private static void checkFiles(final long files, final long memoryBudget, final long bytes) {
+        if (files > MAX_FILES) {
+            throw new IllegalArgumentException(String.format(
+                "memoryBudget太小: 估算的数据为%d字节，最多%d个临时文件，至少需要%d字节的预算，当前为%d",
+                bytes, MAX_FILES, (bytes + MAX_FILES - 1) / MAX_FILES, memoryBudget));
+        }
+    }
+
+    /**
+     * 每个临时文件的缓冲区大小，同时打开的files个文件的缓冲区合计不超过预算的四分之一
+     */
+    private static int bufferSize(final long memoryBudget, final int files) {
+        return (int) Math.max(MIN_BUFFER, Math.min(MAX_BUFFER, memoryBudget / 4 / Math.max(1, files)));
+    }
+
+    static long estimateValueBytes(final Object value) {
+        if (value == null) {
+            return 0L;
+        }
+        if (value instanceof String) {
+            return 40L + 2L * ((String) value).length();
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+            return 16L;
+        }
+        return 32L;
+    }
+
+    private static <V> SpillFile[] partition(final DataFrame<V> df, final int side, final KeyFunction<V> on, final int partitions, final int bufferSize, final List<SpillFile> files) throws IOException {
+        final SpillFile[] parts = new SpillFile[partitions];
+        for (int p = 0; p < partitions; p++) {
+            parts[p] = new SpillFile("dataframe-join", bufferSize);
+            files.add(parts[p]);
+        }
+        final int len = df.length();
+        for (int r = 0; r < len; r++) {
+            final List<V> row = df.row(r);
+            parts[partition(on.apply(row, side), partitions)].write(r, row);
+        }
+        for (final SpillFile part : parts) {
+            part.finish();
+        }
+        return parts;
+    }
+
+    private static int partition(final Object key, final int partitions) {
+        final int h = key == null ? 0 : key.hashCode();
+        return ((h ^ (h >>> 16)) & Integer.MAX_VALUE) % partitions;
+    }
+
+    private static <V> Map<Object, Entry<V>> load(final SpillFile part, final int side, final KeyFunction<V> on) throws IOException {
+        final Map<Object, Entry<V>> map = new LinkedHashMap<>();
+        for (long i = 0; i < part.rows(); i++) {
+            final long seq = part.readSeq();
+            final List<V> row = part.readRow();
+            final Object key = on.apply(row, side);
+            if (map.put(key, new Entry<>(seq, row)) != null) {
+                throw new IllegalArgumentException("generated key is not unique: " + key);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * 多路归并已排好序的文件，逐列追加到按总行数分配的列中
+     */
+    private static <V> List<List<V>> merge(final List<SpillFile> files, final Comparator<Head<V>> comparator, final int width) throws IOException {
+        long total = 0;
+        final long[] remaining = new long[files.size()];
+        for (int f = 0; f < files.size(); f++) {
+            remaining[f] = files.get(f).rows();
+            total += remaining[f];
+        }
+        final List<List<V>> blocks = new ArrayList<>(width);
+        for (int c = 0; c < width; c++) {
+            blocks.add(new ArrayList<V>((int) total));
+        }
+
+        final PriorityQueue<Head<V>> heads = new PriorityQueue<>(Math.max(1, files.size()), comparator);
+        for (int f = 0; f < files.size(); f++) {
+            if (remaining[f]-- > 0) {
+                heads.add(new Head<V>(f, files.get(f).readSeq(), files.get(f).<V>readRow()));
+            }
+        }
+        while (!heads.isEmpty()) {
+            final Head<V> head = heads.poll();
+            for (int c = 0; c < width; c++) {
+                blocks.get(c).add(head.row.get(c));
+            }
+            final SpillFile file = files.get(head.file);
+            if (remaining[head.file]-- > 0) {
+                heads.add(new Head<V>(head.file, file.readSeq(), file.<V>readRow()));
+            } else {
+                // 读完的文件立即删除并释放缓冲区
+                file.close();
+            }
+        }
+        return blocks;
+    }
+
+    private static final class Entry<V> {
+        private final long seq;
+        private final List<V> row;
+
+        private Entry(final long seq, final List<V> row) {
+            this.seq = seq;
+            this.row = row;
+        }
+    }
+
+    private static final class Head<V> {
+        private final int file;
+        private final long seq;
+        private final List<V> row;
+
+        private Head(final int file, final long seq, final List<V> row) {
+            this.file = file;
+            this.seq = seq;
+            this.row = row;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package io.github.yufeixuan.impl;
+
+import io.github.yufeixuan.DataFrame;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * 描述统计和分位数，null和NaN不参与统计。
+ *
+ * <p>describe每列只遍历一次，使用Welford算法累计均值和方差。
+ * 行数较多时按行分段并行累计，再合并各段的结果。
+ * 压缩的数值列使用压缩数据上的count、sum、min、max，方差再遍历一次压缩数据计算。</p>
+ */
+public class Statistics {
+    public static final List<Object> DESCRIBE_COLUMNS = Collections.unmodifiableList(
+        Arrays.<Object>asList("column", "count", "mean", "std", "min", "max"));
+    private static final int CHUNK_ROWS = 1 << 16;
+
+    /**
+     * 每个数值列输出一行: 列名、个数、均值、样本标准差、最小值、最大值，
+     * 含有非数值的列和没有数值的列不输出
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> DataFrame<V> describe(final List<Object> names, final List<List<V>> blocks) {
+        final DataFrame<V> describe = new DataFrame<>(new LinkedList<>(DESCRIBE_COLUMNS));
+        for (int c = 0; c < blocks.size(); c++) {
+            final Moments<V> m = moments(blocks.get(c));
+            if (!m.numeric || m.count == 0) {
+                continue;
+            }
+            describe.append(Arrays.asList(
+                (V) names.get(c),
+                (V) Integer.valueOf((int) m.count),
+                (V) Double.valueOf(m.mean),
+                m.count > 1 ? (V) Double.valueOf(Math.sqrt(m.m2 / (m.count - 1))) : null,
+                m.min,
+                m.max));
+        }
+        return describe;
+    }
+
+    /**
+     * 精确分位数，使用线性插值，位置为q*(n-1)。
+     * 复制出所有非空值后按q从小到大依次用快速选择定位，不做完整排序
+     */
+    public static List<Double> quantile(final List<?> block, final double ... qs) {
+        final ColumnType type = ColumnType.of(block);
+        final double[] values = new double[block.size()];
+        int n = 0;
+        for (final Object val : block) {
+            final double value = type.toDouble(val);
+            if (!Double.isNaN(value)) {
+                values[n++] = value;
+            }
+        }
+
+        final Integer[] order = order(qs);
+        final Double[] result = new Double[qs.length];
+        int lo = 0;
+        for (final int i : order) {
+            if (n == 0) {
+                result[i] = Double.NaN;
+                continue;
+            }
+            final double pos = qs[i] * (n - 1);
+            final int below = (int) Math.floor(pos);
+            // 选择第below个之后，前面的值都不大于它，后面的值都不小于它
+            final double v1 = select(values, lo, n - 1, below);
+            lo = below;
+            if (pos == below) {
+                result[i] = v1;
+            } else {
+                final double v2 = select(values, below + 1, n - 1, below + 1);
+                result[i] = v1 + (v2 - v1) * (pos - below);
+            }
+        }
+        return Arrays.asList(result);
+    }
+
+    /**
+     * 近似分位数，一次流式遍历，只占用sketch的内存
+     */
+    public static List<Double> approxQuantile(final List<?> block, final double ... qs) {
+        order(qs);
+        final ColumnType type = ColumnType.of(block);
+        final QuantileSketch sketch = new QuantileSketch();
+        for (final Object val : block) {
+            sketch.update(type.toDouble(val));
+        }
+        final List<Double> result = new ArrayList<>(qs.length);
+        for (final double q : qs) {
+            result.add(sketch.quantile(q));
+        }
+        return result;
+    }
+
+    /**
+     * 检查q的范围，返回按q从小到大的下标
+     */
+    private static Integer[] order(final double[] qs) {
+        final Integer[] order = new Integer[qs.length];
+        for (int i = 0; i < qs.length; i++) {
+            if (!(qs[i] >= 0 && qs[i] <= 1)) {
+                throw new IllegalArgumentException("分位数必须在0到1之间: " + qs[i]);
+            }
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(qs[a], qs[b]));
+        return order;
+    }
+
+    /**
+     * 快速选择，返回a[lo..hi]中第k小的值，并把a[lo..hi]按它划分
+     */
+    private static double select(final double[] a, int lo, int hi, final int k) {
+        while (lo < hi) {
+            final double pivot = median(a[lo], a[(lo + hi) >>> 1], a[hi]);
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (a[i] < pivot) {
+                    i++;
+                }
+                while (a[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    final double tmp = a[i];
+                    a[i++] = a[j];
+                    a[j--] = tmp;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return a[k];
+            }
+        }
+        return a[k];
+    }
+
+    private static double median(final double a, final double b, final double c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    /**
+     * 累计一列的统计量，遇到非数值时标记为非数值列
+     */
+    private static <V> Moments<V> moments(final List<V> block) {
+        if (block instanceof EncodedColumn) {
+            final Moments<V> m = moments((EncodedColumn<V>) block);
+            if (m != null) {
+                return m;
+            }
+        }
+        final int len = block.size();
+        final int chunks = (len + CHUNK_ROWS - 1) / CHUNK_ROWS;
+        if (chunks <= 1) {
+            return moments(block, 0, len);
+        }
+        return IntStream.range(0, chunks).parallel()
+            .mapToObj(i -> moments(block, i * CHUNK_ROWS, Math.min(len, (i + 1) * CHUNK_ROWS)))
+            .reduce(new Moments<V>(), Statistics::merge);
+    }
+
+    /**
+     * 在压缩数据上计算，不是数值列或者最大值为NaN时返回null，按普通的列计算
+     */
+    private static <V> Moments<V> moments(final EncodedColumn<V> block) {
+        final ColumnType type = block.type();
+        if (type != ColumnType.INTEGER && type != ColumnType.LONG
+            && type != ColumnType.DOUBLE && type != ColumnType.DECIMAL) {
+            return null;
+        }
+        // Double.compare把NaN排在最后，max为NaN时min和max需要跳过NaN
+        final V max = block.max();
+        if (Double.isNaN(type.toDouble(max))) {
+            return null;
+        }
+        final Moments<V> m = new Moments<>();
+        m.count = block.count();
+        m.mean = block.sum() / m.count;
+        m.m2 = block.sumOfSquares(m.mean);
+        m.min = block.min();
+        m.minValue = type.toDouble(m.min);
+        m.max = max;
+        m.maxValue = type.toDouble(max);
+        return m;
+    }
+
+    /**
+     * 用subList顺序遍历，压缩的列不会对每一行从头解码
+     */
+    private static <V> Moments<V> moments(final List<V> block, final int from, final int to) {
+        final Moments<V> m = new Moments<>();
+        for (final V val : block.subList(from, to)) {
+            if (val == null) {
+                continue;
+            }
+            if (!(val instanceof Number)) {
+                m.numeric = false;
+                return m;
+            }
+            final double x = ((Number) val).doubleValue();
+            if (Double.isNaN(x)) {
+                continue;
+            }
+            m.count++;
+            final double delta = x - m.mean;
+            m.mean += delta / m.count;
+            m.m2 += delta * (x - m.mean);
+            if (m.min == null || x < m.minValue) {
+                m.min = val;
+                m.minValue = x;
+            }
+            if (m.max == null || x > m.maxValue) {
+                m.max = val;
+                m.maxValue = x;
+            }
+        }
+        return m;
+    }
+
+    /**
+     * 合并两段的统计量(Chan等人的并行方差算法)
+     */
+    private static <V> Moments<V> merge(final Moments<V> a, final Moments<V> b) {
+        if (!a.numeric) {
+            return a;
+        }
+        if (!b.numeric || a.count == 0) {
+            return b;
+        }
+        if (b.count == 0) {
+            return a;
+        }
+        final Moments<V> m = new Moments<>();
+        m.count = a.count + b.count;
+        final double delta = b.mean - a.mean;
+        m.mean = a.mean + delta * b.count / m.count;
+        m.m2 = a.m2 + b.m2 + delta * delta * a.count * b.count / m.count;
+        final boolean minA = a.minValue <= b.minValue;
+        m.min = minA ? a.min : b.min;
+        m.minValue = minA ? a.minValue : b.minValue;
+        final boolean maxA = a.maxValue >= b.maxValue;
+        m.max = maxA ? a.max : b.max;
+        m.maxValue = maxA ? a.maxValue : b.maxValue;
+        return m;
+    }
+
+    private static final class Moments<V> {
+        private boolean numeric = true;
+        private long count;
+        private double mean;
+        private double m2;
+        private V min;
+        private V max;
+        private double minValue;
+        private double maxValue;
+    }
+}
@@ -0,0 +1,203 @@
+package io.github.yufeixuan.impl;
+
+import io.github.yufeixuan.DataFrame;
+import io.github.yufeixuan.DataFrame.Aggregation;
+
+import java.util.*;
+
+/**
+ * 窗口函数的实现，每个分区只遍历一次，结果直接写回原列
+ */
+public class Windowing {
+    /**
+     * 按分区列的值把行分组，组内保持原来的行顺序，没有分区列时所有行为一组。
+     * 与索引和join相同，数值相等的值属于同一组，例如Integer的1和Long的1
+     */
+    public static <V> List<int[]> partitions(final DataFrame<V> df, final Integer[] partCols) {
+        final int len = df.length();
+        if (partCols.length == 0) {
+            final int[] rows = new int[len];
+            for (int r = 0; r < len; r++) {
+                rows[r] = r;
+            }
+            return Collections.singletonList(rows);
+        }
+
+        final ColumnType[] types = new ColumnType[partCols.length];
+        for (int i = 0; i < partCols.length; i++) {
+            types[i] = ColumnType.of(df, partCols[i]);
+        }
+        final Map<List<Object>, List<Integer>> groups = new LinkedHashMap<>();
+        for (int r = 0; r < len; r++) {
+            final List<Object> key = new ArrayList<>(partCols.length);
+            for (int i = 0; i < partCols.length; i++) {
+                key.add(types[i].key(df.get(r, partCols[i])));
+            }
+            List<Integer> rows = groups.get(key);
+            if (rows == null) {
+                rows = new ArrayList<>();
+                groups.put(key, rows);
+            }
+            rows.add(r);
+        }
+
+        final List<int[]> partitions = new ArrayList<>(groups.size());
+        for (final List<Integer> rows : groups.values()) {
+            final int[] ids = new int[rows.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = rows.get(i);
+            }
+            partitions.add(ids);
+        }
+        return partitions;
+    }
+
+    /**
+     * 滑动窗口聚合，窗口未满或窗口内有null时结果为null，窗口内有NaN时结果为NaN。
+     * sum/mean使用带补偿的滑动累加(Neumaier)，无穷大按个数单独统计，不参与累加；
+     * min/max使用单调队列，每行只进出窗口一次
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> void rolling(final DataFrame<V> df, final List<int[]> partitions, final int col, final int window, final Aggregation agg) {
+        final ColumnType type = ColumnType.of(df, col);
+        for (final int[] rows : partitions) {
+            final int n = rows.length;
+            final double[] values = new double[n];
+            final boolean[] nulls = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                final V val = df.get(rows[i], col);
+                nulls[i] = val == null;
+                values[i] = nulls[i] ? 0d : type.toDouble(val);
+            }
+
+            final int[] deque = new int[n];
+            int head = 0;
+            int tail = 0;
+            final Sum sum = new Sum();
+            int nullCount = 0;
+
+            for (int i = 0; i < n; i++) {
+                sum.add(values[i]);
+                nullCount += nulls[i] ? 1 : 0;
+                if (!nulls[i] && !Double.isNaN(values[i]) && (agg == Aggregation.MIN || agg == Aggregation.MAX)) {
+                    while (tail > head && (agg == Aggregation.MIN ? values[deque[tail - 1]] >= values[i] : values[deque[tail - 1]] <= values[i])) {
+                        tail--;
+                    }
+                    deque[tail++] = i;
+                }
+
+                final int out = i - window;
+                if (out >= 0) {
+                    sum.remove(values[out]);
+                    nullCount -= nulls[out] ? 1 : 0;
+                    if (tail > head && deque[head] == out) {
+                        head++;
+                    }
+                }
+
+                Double result = null;
+                if (i >= window - 1 && nullCount == 0) {
+                    switch (agg) {
+                        case SUM:
+                            result = sum.value();
+                            break;
+                        case MEAN:
+                            result = sum.value() / window;
+                            break;
+                        case MIN:
+                        case MAX:
+                            // NaN与任何值比较都为false，不能放进单调队列
+                            result = sum.nanCount > 0 ? Double.NaN : values[deque[head]];
+                            break;
+                        default:
+                            throw new UnsupportedOperationException("rolling不支持: " + agg);
+                    }
+                }
+                df.set(rows[i], col, (V) result);
+            }
+        }
+    }
+
+    /**
+     * 累加或累乘，null值跳过并保持为null
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> void cumulative(final DataFrame<V> df, final List<int[]> partitions, final int col, final boolean product) {
+        final ColumnType type = ColumnType.of(df, col);
+        for (final int[] rows : partitions) {
+            double acc = product ? 1d : 0d;
+            for (final int r : rows) {
+                final V val = df.get(r, col);
+                if (val != null) {
+                    acc = product ? acc * type.toDouble(val) : acc + type.toDouble(val);
+                    df.set(r, col, (V) Double.valueOf(acc));
+                }
+            }
+        }
+    }
+
+    /**
+     * 组内向后移动periods行，periods为负数时向前移动，空出的位置为null
+     */
+    public static <V> void shift(final DataFrame<V> df, final List<int[]> partitions, final int col, final int periods) {
+        for (final int[] rows : partitions) {
+            final int n = rows.length;
+            final List<V> values = new ArrayList<>(n);
+            for (final int r : rows) {
+                values.add(df.get(r, col));
+            }
+            for (int i = 0; i < n; i++) {
+                final int src = i - periods;
+                df.set(rows[i], col, src >= 0 && src < n ? values.get(src) : null);
+            }
+        }
+    }
+
+    /**
+     * 滑动窗口内的和。有限值使用Neumaier补偿累加，避免大小相差很大的值相互抵消后丢失精度；
+     * NaN和无穷大只记录个数，移出窗口后不会影响之后的结果
+     */
+    private static final class Sum {
+        private double sum;
+        private double compensation;
+        private int nanCount;
+        private int positiveInfinity;
+        private int negativeInfinity;
+
+        private void add(final double x) {
+            if (Double.isNaN(x)) {
+                nanCount++;
+            } else if (x == Double.POSITIVE_INFINITY) {
+                positiveInfinity++;
+            } else if (x == Double.NEGATIVE_INFINITY) {
+                negativeInfinity++;
+            } else {
+                final double t = sum + x;
+                compensation += Math.abs(sum) >= Math.abs(x) ? (sum - t) + x : (x - t) + sum;
+                sum = t;
+            }
+        }
+
+        private void remove(final double x) {
+            if (Double.isNaN(x)) {
+                nanCount--;
+            } else if (x == Double.POSITIVE_INFINITY) {
+                positiveInfinity--;
+            } else if (x == Double.NEGATIVE_INFINITY) {
+                negativeInfinity--;
+            } else {
+                add(-x);
+            }
+        }
+
+        private double value() {
+            if (nanCount > 0 || positiveInfinity > 0 && negativeInfinity > 0) {
+                return Double.NaN;
+            }
+            if (positiveInfinity > 0) {
+                return Double.POSITIVE_INFINITY;
+            }
+            return negativeInfinity > 0 ? Double.NEGATIVE_INFINITY : sum + compensation;
+        }
+    }
+}
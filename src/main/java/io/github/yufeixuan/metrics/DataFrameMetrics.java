@@ -0,0 +1,35 @@
+package io.github.yufeixuan.metrics;
+
+/**
+ * DataFrame操作的监听器，每次操作完成后收到一条{@link Operation}记录。
+ *
+ * <p>通过{@link Metrics#set(DataFrameMetrics)}全局设置，默认为{@link #NOOP}，
+ * 此时不会采集任何数据。实现需要是线程安全的。</p>
+ */
+public interface DataFrameMetrics {
+
+    /**
+     * 不采集任何数据的默认实现
+     */
+    DataFrameMetrics NOOP = new DataFrameMetrics() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void record(final Operation operation) {
+        }
+    };
+
+    /**
+     * 返回false时跳过计时和内存统计
+     */
+    boolean isEnabled();
+
+    /**
+     * 记录一次完成的操作
+     * @param operation 操作记录
+     */
+    void record(Operation operation);
+}
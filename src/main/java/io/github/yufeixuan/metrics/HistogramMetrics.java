@@ -0,0 +1,193 @@
+package io.github.yufeixuan.metrics;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 在内存中按操作名称汇总的统计，耗时按2的幂分桶，用于估算分位数
+ */
+public class HistogramMetrics implements DataFrameMetrics {
+    private final ConcurrentMap<String, Stats> stats = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void record(final Operation operation) {
+        Stats s = stats.get(operation.getName());
+        if (s == null) {
+            final Stats created = new Stats(operation.getName());
+            s = stats.putIfAbsent(operation.getName(), created);
+            if (s == null) {
+                s = created;
+            }
+        }
+        s.add(operation);
+    }
+
+    /**
+     * 返回指定操作的统计，没有记录时返回null
+     * @param name 操作名称
+     */
+    public Stats get(final String name) {
+        final Stats s = stats.get(name);
+        return s == null ? null : s.copy();
+    }
+
+    /**
+     * 返回所有操作的统计，按操作名称排序
+     */
+    public Map<String, Stats> snapshot() {
+        final Map<String, Stats> snapshot = new TreeMap<>();
+        for (final Stats s : stats.values()) {
+            snapshot.put(s.name, s.copy());
+        }
+        return snapshot;
+    }
+
+    public void reset() {
+        stats.clear();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        for (final Stats s : snapshot().values()) {
+            sb.append(s).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 单个操作的汇总统计
+     */
+    public static final class Stats {
+        private final String name;
+        private final long[] buckets = new long[64];
+        private final Map<String, Long> strategies = new TreeMap<>();
+        private long count;
+        private long totalNanos;
+        private long minNanos = Long.MAX_VALUE;
+        private long maxNanos;
+        private long rowsIn;
+        private long rowsOut;
+        private long allocatedBytes;
+        private long peakHeapUsed;
+
+        private Stats(final String name) {
+            this.name = name;
+        }
+
+        private synchronized void add(final Operation op) {
+            count++;
+            totalNanos += op.getNanos();
+            minNanos = Math.min(minNanos, op.getNanos());
+            maxNanos = Math.max(maxNanos, op.getNanos());
+            buckets[63 - Long.numberOfLeadingZeros(Math.max(1L, op.getNanos()))]++;
+            rowsIn += op.getRowsIn();
+            rowsOut += op.getRowsOut();
+            if (op.getAllocatedBytes() > 0) {
+                allocatedBytes += op.getAllocatedBytes();
+            }
+            peakHeapUsed = Math.max(peakHeapUsed, op.getHeapUsed());
+            if (op.getStrategy() != null) {
+                final Long n = strategies.get(op.getStrategy());
+                strategies.put(op.getStrategy(), n == null ? 1L : n + 1);
+            }
+        }
+
+        private synchronized Stats copy() {
+            final Stats copy = new Stats(name);
+            System.arraycopy(buckets, 0, copy.buckets, 0, buckets.length);
+            copy.strategies.putAll(strategies);
+            copy.count = count;
+            copy.totalNanos = totalNanos;
+            copy.minNanos = minNanos;
+            copy.maxNanos = maxNanos;
+            copy.rowsIn = rowsIn;
+            copy.rowsOut = rowsOut;
+            copy.allocatedBytes = allocatedBytes;
+            copy.peakHeapUsed = peakHeapUsed;
+            return copy;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMinNanos() {
+            return count == 0 ? 0 : minNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public double getMeanNanos() {
+            return count == 0 ? 0d : (double) totalNanos / count;
+        }
+
+        /**
+         * 估算耗时的分位数，返回所在分桶的上界，误差在2倍以内
+         * @param q 分位数，0到1之间
+         */
+        public long getPercentileNanos(final double q) {
+            if (count == 0) {
+                return 0;
+            }
+            final long rank = (long) Math.ceil(q * count);
+            long seen = 0;
+            for (int b = 0; b < buckets.length; b++) {
+                seen += buckets[b];
+                if (seen >= Math.max(1L, rank)) {
+                    return Math.min(maxNanos, b == 62 ? Long.MAX_VALUE : (1L << (b + 1)) - 1);
+                }
+            }
+            return maxNanos;
+        }
+
+        public long getRowsIn() {
+            return rowsIn;
+        }
+
+        public long getRowsOut() {
+            return rowsOut;
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        /**
+         * 各次操作结束时JVM已使用堆内存的最大值，见{@link Operation#getHeapUsed()}
+         */
+        public long getPeakHeapUsed() {
+            return peakHeapUsed;
+        }
+
+        /**
+         * 每种执行方式被选择的次数
+         */
+        public Map<String, Long> getStrategies() {
+            return Collections.unmodifiableMap(strategies);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s count=%d mean=%.0fns p50=%dns p99=%dns max=%dns rowsIn=%d rowsOut=%d allocated=%d peakHeap=%d%s",
+                name, count, getMeanNanos(), getPercentileNanos(0.5), getPercentileNanos(0.99), maxNanos,
+                rowsIn, rowsOut, allocatedBytes, peakHeapUsed, strategies.isEmpty() ? "" : " " + strategies);
+        }
+    }
+}
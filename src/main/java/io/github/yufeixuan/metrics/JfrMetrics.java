@@ -0,0 +1,117 @@
+package io.github.yufeixuan.metrics;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 把每次操作作为JFR事件输出，可以在JDK Mission Control中按操作查看。
+ *
+ * <p>需要运行在支持JFR的JDK(8u272、11及以上)上，只有开启了Flight Recording
+ * 且启用了io.github.yufeixuan.Operation事件时才会采集数据。
+ * 编译目标为Java 8，因此通过反射使用jdk.jfr.EventFactory定义事件，
+ * 不支持JFR的JDK上创建时抛出UnsupportedOperationException。</p>
+ */
+public class JfrMetrics implements DataFrameMetrics {
+    private final Object factory;
+    private final Object eventType;
+    private final Method isEnabled;
+    private final Method newEvent;
+    private final Method shouldCommit;
+    private final Method set;
+    private final Method commit;
+
+    public JfrMetrics() {
+        try {
+            final Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+            final Class<?> eventClass = Class.forName("jdk.jfr.Event");
+            final Class<?> eventTypeClass = Class.forName("jdk.jfr.EventType");
+
+            final List<Object> annotations = Arrays.asList(
+                annotation("jdk.jfr.Name", "io.github.yufeixuan.Operation"),
+                annotation("jdk.jfr.Label", "DataFrame Operation"),
+                annotation("jdk.jfr.Category", new String[] {"DataFrame"}),
+                annotation("jdk.jfr.StackTrace", false));
+            // 字段的顺序与record中set的下标一致
+            final List<Object> fields = Arrays.asList(
+                field(String.class, "operation", annotation("jdk.jfr.Label", "Operation")),
+                field(String.class, "strategy", annotation("jdk.jfr.Label", "Strategy")),
+                field(long.class, "rowsIn", annotation("jdk.jfr.Label", "Rows In")),
+                field(long.class, "rowsOut", annotation("jdk.jfr.Label", "Rows Out")),
+                field(long.class, "elapsed", annotation("jdk.jfr.Label", "Elapsed"),
+                    annotation("jdk.jfr.Timespan", "NANOSECONDS")),
+                field(long.class, "allocatedBytes", annotation("jdk.jfr.Label", "Allocated"),
+                    annotation("jdk.jfr.DataAmount", "BYTES")),
+                field(long.class, "heapUsed", annotation("jdk.jfr.Label", "JVM Heap Used"),
+                    annotation("jdk.jfr.DataAmount", "BYTES")));
+
+            factory = factoryClass.getMethod("create", List.class, List.class).invoke(null, annotations, fields);
+            eventType = factoryClass.getMethod("getEventType").invoke(factory);
+            isEnabled = eventTypeClass.getMethod("isEnabled");
+            newEvent = factoryClass.getMethod("newEvent");
+            shouldCommit = eventClass.getMethod("shouldCommit");
+            set = eventClass.getMethod("set", int.class, Object.class);
+            commit = eventClass.getMethod("commit");
+        } catch (final ClassNotFoundException | NoSuchMethodException e) {
+            throw new UnsupportedOperationException("JFR需要JDK 8u272、11及以上: " + System.getProperty("java.version"), e);
+        } catch (final ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return (Boolean) invoke(isEnabled, eventType);
+    }
+
+    @Override
+    public void record(final Operation operation) {
+        final Object event = invoke(newEvent, factory);
+        if ((Boolean) invoke(shouldCommit, event)) {
+            invoke(set, event, 0, operation.getName());
+            invoke(set, event, 1, operation.getStrategy());
+            invoke(set, event, 2, operation.getRowsIn());
+            invoke(set, event, 3, operation.getRowsOut());
+            invoke(set, event, 4, operation.getNanos());
+            invoke(set, event, 5, operation.getAllocatedBytes());
+            invoke(set, event, 6, operation.getHeapUsed());
+            invoke(commit, event);
+        }
+    }
+
+    private static Object invoke(final Method method, final Object target, final Object ... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (final InvocationTargetException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (final IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 创建jdk.jfr.AnnotationElement
+     */
+    private static Object annotation(final String type, final Object value) throws ReflectiveOperationException {
+        final Constructor<?> constructor = Class.forName("jdk.jfr.AnnotationElement")
+            .getConstructor(Class.class, Object.class);
+        return constructor.newInstance(Class.forName(type), value);
+    }
+
+    /**
+     * 创建jdk.jfr.ValueDescriptor
+     */
+    private static Object field(final Class<?> type, final String name, final Object ... annotations) throws ReflectiveOperationException {
+        final Constructor<?> constructor = Class.forName("jdk.jfr.ValueDescriptor")
+            .getConstructor(Class.class, String.class, List.class);
+        return constructor.newInstance(type, name, Collections.unmodifiableList(new ArrayList<>(Arrays.asList(annotations))));
+    }
+}
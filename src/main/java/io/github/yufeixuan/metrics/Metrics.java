@@ -0,0 +1,102 @@
+package io.github.yufeixuan.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * 全局的{@link DataFrameMetrics}以及操作计时的工具方法。
+ *
+ * <p>未启用时{@link #start(String, long)}只读取一次volatile变量并返回null。
+ * 内存只记录当前线程分配的字节数和结束时JVM的堆使用量，不统计单个DataFrame的内存峰值。</p>
+ */
+public final class Metrics {
+    private static volatile DataFrameMetrics metrics = DataFrameMetrics.NOOP;
+
+    private static final com.sun.management.ThreadMXBean THREADS;
+
+    static {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        THREADS = threads instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()
+            ? (com.sun.management.ThreadMXBean) threads : null;
+    }
+
+    private Metrics() {
+    }
+
+    public static DataFrameMetrics get() {
+        return metrics;
+    }
+
+    /**
+     * 设置全局的监听器，传入null时恢复为{@link DataFrameMetrics#NOOP}
+     * @param metrics 监听器
+     */
+    public static void set(final DataFrameMetrics metrics) {
+        Metrics.metrics = metrics == null ? DataFrameMetrics.NOOP : metrics;
+    }
+
+    /**
+     * 开始一次操作的计时，未启用时返回null
+     * @param name 操作名称
+     * @param rowsIn 输入行数
+     */
+    public static Timer start(final String name, final long rowsIn) {
+        final DataFrameMetrics current = metrics;
+        return current.isEnabled() ? new Timer(current, name, rowsIn) : null;
+    }
+
+    /**
+     * 结束计时并记录，timer为null时不做任何事
+     * @param timer start返回的计时器
+     * @param rowsOut 输出行数
+     */
+    public static void finish(final Timer timer, final long rowsOut) {
+        if (timer != null) {
+            timer.finish(rowsOut);
+        }
+    }
+
+    /**
+     * 记录选择的执行方式，timer为null时不做任何事
+     * @param timer start返回的计时器
+     * @param strategy 执行方式
+     */
+    public static void strategy(final Timer timer, final String strategy) {
+        if (timer != null) {
+            timer.strategy = strategy;
+        }
+    }
+
+    private static long allocatedBytes() {
+        return THREADS == null ? -1L : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * 一次操作的计时状态
+     */
+    public static final class Timer {
+        private final DataFrameMetrics metrics;
+        private final String name;
+        private final long rowsIn;
+        private final long startBytes;
+        private final long startNanos;
+        private String strategy;
+
+        private Timer(final DataFrameMetrics metrics, final String name, final long rowsIn) {
+            this.metrics = metrics;
+            this.name = name;
+            this.rowsIn = rowsIn;
+            this.startBytes = allocatedBytes();
+            this.startNanos = System.nanoTime();
+        }
+
+        private void finish(final long rowsOut) {
+            final long nanos = System.nanoTime() - startNanos;
+            final long bytes = startBytes < 0 ? -1L : allocatedBytes() - startBytes;
+            final Runtime runtime = Runtime.getRuntime();
+            metrics.record(new Operation(name, strategy, rowsIn, rowsOut, nanos, bytes,
+                runtime.totalMemory() - runtime.freeMemory()));
+        }
+    }
+}
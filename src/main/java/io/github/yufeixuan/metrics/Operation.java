@@ -0,0 +1,73 @@
+package io.github.yufeixuan.metrics;
+
+/**
+ * 一次DataFrame操作的统计数据
+ */
+public final class Operation {
+    private final String name;
+    private final String strategy;
+    private final long rowsIn;
+    private final long rowsOut;
+    private final long nanos;
+    private final long allocatedBytes;
+    private final long heapUsed;
+
+    public Operation(final String name, final String strategy, final long rowsIn, final long rowsOut,
+                     final long nanos, final long allocatedBytes, final long heapUsed) {
+        this.name = name;
+        this.strategy = strategy;
+        this.rowsIn = rowsIn;
+        this.rowsOut = rowsOut;
+        this.nanos = nanos;
+        this.allocatedBytes = allocatedBytes;
+        this.heapUsed = heapUsed;
+    }
+
+    /**
+     * 操作名称，与DataFrame的方法名相同
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 选择的执行方式，例如joinOn的hash或index，没有多种方式时为null
+     */
+    public String getStrategy() {
+        return strategy;
+    }
+
+    public long getRowsIn() {
+        return rowsIn;
+    }
+
+    public long getRowsOut() {
+        return rowsOut;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * 当前线程在操作期间分配的字节数，JVM不支持时为-1
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * 操作结束时整个JVM已使用的堆内存，包含其他线程和尚未回收的对象。
+     * 不是该操作或某个DataFrame的内存峰值，单个DataFrame的峰值无法低成本地测量，不在统计范围内
+     */
+    public long getHeapUsed() {
+        return heapUsed;
+    }
+
+    @Override
+    public String toString() {
+        return name + (strategy == null ? "" : "[" + strategy + "]")
+            + " rowsIn=" + rowsIn + " rowsOut=" + rowsOut + " nanos=" + nanos
+            + " allocatedBytes=" + allocatedBytes + " heapUsed=" + heapUsed;
+    }
+}
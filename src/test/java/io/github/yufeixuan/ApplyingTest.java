@@ -0,0 +1,147 @@
+package io.github.yufeixuan;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import io.github.yufeixuan.DataFrame.IndexType;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 并行的mapColumn、applyRows和transform
+ */
+public class ApplyingTest
+{
+    private static final int ROWS = 10000;
+
+    private ExecutorService pool;
+    private AtomicInteger tasks;
+    private Executor executor;
+
+    @Before
+    public void start()
+    {
+        pool = Executors.newFixedThreadPool(3);
+        tasks = new AtomicInteger();
+        executor = command -> {
+            tasks.incrementAndGet();
+            pool.execute(command);
+        };
+    }
+
+    @After
+    public void stop()
+    {
+        pool.shutdown();
+    }
+
+    private static DataFrame<Object> frame(final int rows)
+    {
+        final DataFrame<Object> df = new DataFrame<>("a", "b");
+        for (int i = 0; i < rows; i++) {
+            df.append(Arrays.<Object>asList(i, i % 3));
+        }
+        return df;
+    }
+
+    @Test
+    public void mapColumnInParallel()
+    {
+        final DataFrame<Object> df = frame(ROWS);
+        df.mapColumn("a", (value, row) -> (Integer) value * 2 + row, executor);
+        assertTrue(tasks.get() > 1);
+        final List<Object> a = df.columnView(0);
+        for (int i = 0; i < ROWS; i++) {
+            assertEquals(3 * i, a.get(i));
+        }
+    }
+
+    @Test
+    public void applyRowsAddsColumn()
+    {
+        final DataFrame<Object> df = frame(ROWS);
+        df.applyRows("sum", (row, r) -> (Integer) row.get(0) + (Integer) row.get(1), executor);
+        assertTrue(tasks.get() > 1);
+        assertEquals(Arrays.<Object>asList("a", "b", "sum"), df.getColumns());
+        for (int i = 0; i < ROWS; i++) {
+            assertEquals(i + i % 3, df.get(i, "sum"));
+        }
+    }
+
+    @Test
+    public void applyRowsOnFrameWithoutRows()
+    {
+        final DataFrame<Object> df = new DataFrame<>("a");
+        df.applyRows("b", (row, r) -> 1);
+        assertEquals(0, df.length());
+        assertEquals(Arrays.<Object>asList("a", "b"), df.getColumns());
+        df.append(Arrays.<Object>asList(1, 2));
+        assertEquals(Arrays.<Object>asList(1, 2), df.row(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void mapColumnUnknownColumn()
+    {
+        frame(3).mapColumn("c", (value, row) -> value);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void applyRowsExistingColumn()
+    {
+        frame(3).applyRows("b", (row, r) -> null);
+    }
+
+    @Test
+    public void functionExceptionIsRethrownAndDataUnchanged()
+    {
+        final DataFrame<Object> df = frame(ROWS);
+        try {
+            df.mapColumn("a", (value, row) -> {
+                if (row == ROWS - 1) {
+                    throw new IllegalStateException("row " + row);
+                }
+                return null;
+            }, executor);
+            throw new AssertionError("expected IllegalStateException");
+        } catch (final IllegalStateException e) {
+            assertEquals("row " + (ROWS - 1), e.getMessage());
+        }
+        assertEquals(0, df.get(0, "a"));
+        assertEquals(ROWS - 1, df.get(ROWS - 1, "a"));
+    }
+
+    @Test
+    public void mapColumnRebuildsIndex()
+    {
+        for (final IndexType type : IndexType.values()) {
+            final DataFrame<Object> df = frame(100).createIndex("b", type);
+            df.mapColumn("b", (value, row) -> (Integer) value + 10, executor);
+            assertNotNull(df.getRowIndex("b"));
+            assertEquals(type, df.getRowIndex("b").getType());
+            assertEquals(0, df.lookup("b", 0).size());
+            assertEquals(34, df.lookup("b", 10).size());
+            assertEquals(33, df.lookup("b", 12).size());
+        }
+    }
+
+    @Test
+    public void transformLeavesSourceUnchanged()
+    {
+        final DataFrame<Object> df = frame(5).createIndex("a", IndexType.HASH);
+        final DataFrame<Object> result = df.transform(executor, (value, row) -> (Integer) value * 10, "a");
+        assertEquals(Arrays.<Object>asList(0, 10, 20, 30, 40), result.columnView(0));
+        assertEquals(Arrays.<Object>asList(0, 1, 2, 3, 4), df.columnView(0));
+        assertEquals(Arrays.asList(2), df.lookup("a", 2));
+        assertEquals(Arrays.<Object>asList(0, 1, 2, 0, 1), result.columnView(1));
+    }
+}
@@ -0,0 +1,135 @@
+package io.github.yufeixuan;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import io.github.yufeixuan.DataFrame.IndexType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * 二级索引在修改后与遍历整列的结果一致
+ */
+public class ColumnIndexTest
+{
+    private static DataFrame<Object> frame(final IndexType type)
+    {
+        final DataFrame<Object> df = new DataFrame<>("k", "v");
+        df.append(Arrays.<Object>asList(3, "a"));
+        df.append(Arrays.<Object>asList(1, "b"));
+        df.append(Arrays.<Object>asList(3, "c"));
+        df.append(Arrays.<Object>asList(2, "d"));
+        return df.createIndex("k", type);
+    }
+
+    private static List<Integer> sorted(final List<Integer> rows)
+    {
+        final List<Integer> copy = new ArrayList<>(rows);
+        Collections.sort(copy);
+        return copy;
+    }
+
+    /**
+     * 用没有索引的副本遍历整列，比较等值和范围查询的结果
+     */
+    private static void assertMatchesScan(final DataFrame<Object> df, final Object col)
+    {
+        assertNotNull(df.getRowIndex(col));
+        final DataFrame<Object> scan = df.clone().dropIndex(col);
+        for (final Object key : Arrays.<Object>asList(0, 1, 2, 3, 4, 5)) {
+            assertEquals(scan.lookup(col, key), sorted(df.lookup(col, key)));
+        }
+        if (df.getRowIndex(col).getType() == IndexType.SORTED) {
+            assertEquals(scan.range(col, 2, 4), sorted(df.range(col, 2, 4)));
+            assertEquals(scan.range(col, null, 2), sorted(df.range(col, null, 2)));
+        }
+    }
+
+    @Test
+    public void setUpdatesIndex()
+    {
+        for (final IndexType type : IndexType.values()) {
+            final DataFrame<Object> df = frame(type);
+            df.set(0, "k", 5);
+            df.set(1, 0, 3);
+            assertEquals(Arrays.asList(1, 2), sorted(df.lookup("k", 3)));
+            assertMatchesScan(df, "k");
+        }
+    }
+
+    @Test
+    public void dropRowShiftsRows()
+    {
+        for (final IndexType type : IndexType.values()) {
+            final DataFrame<Object> df = frame(type);
+            df.dropRow(Arrays.asList(1));
+            assertEquals(Arrays.asList(0, 1), sorted(df.lookup("k", 3)));
+            assertEquals(Arrays.asList(2), df.lookup("k", 2));
+            assertMatchesScan(df, "k");
+        }
+    }
+
+    @Test
+    public void appendAddsRows()
+    {
+        for (final IndexType type : IndexType.values()) {
+            final DataFrame<Object> df = frame(type);
+            df.append(Arrays.<Object>asList(1, "e"));
+            df.append(Arrays.<Object>asList(null, "f"));
+            assertEquals(Arrays.asList(1, 4), sorted(df.lookup("k", 1)));
+            assertMatchesScan(df, "k");
+        }
+    }
+
+    @Test
+    public void renameKeepsIndex()
+    {
+        for (final IndexType type : IndexType.values()) {
+            final DataFrame<Object> df = frame(type);
+            df.rename("k", "key");
+            assertNull(df.getRowIndex("k"));
+            assertEquals(Arrays.asList(0, 2), sorted(df.lookup("key", 3)));
+            df.set(3, "key", 3);
+            assertMatchesScan(df, "key");
+        }
+    }
+
+    @Test
+    public void numericKeysOfDifferentTypesMatch()
+    {
+        for (final IndexType type : IndexType.values()) {
+            final DataFrame<Object> df = new DataFrame<>("k");
+            for (long i = 0; i < 5; i++) {
+                df.append(Arrays.<Object>asList(i));
+            }
+            df.createIndex("k", type);
+            assertEquals(Arrays.asList(2), df.lookup("k", 2));
+            assertEquals(Arrays.asList(2), df.lookup("k", 2L));
+            assertEquals(Arrays.asList(1, 2, 3), sorted(df.range("k", 1, 3L)));
+
+            df.set(4, "k", 2);
+            assertEquals(Arrays.asList(2, 4), sorted(df.lookup("k", 2L)));
+            assertMatchesScan(df, "k");
+        }
+    }
+
+    @Test
+    public void snapshotKeepsIndexOfItsData()
+    {
+        for (final IndexType type : IndexType.values()) {
+            final DataFrame<Object> df = frame(type);
+            final FrozenDataFrame<Object> frozen = df.freeze();
+            df.set(0, "k", 1);
+            df.append(Arrays.<Object>asList(3, "e"));
+            assertEquals(Arrays.asList(0, 2), sorted(frozen.lookup("k", 3)));
+            assertEquals(Arrays.asList(2, 4), sorted(df.lookup("k", 3)));
+            assertEquals(Arrays.asList(0, 2), sorted(frozen.thaw().lookup("k", 3)));
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package io.github.yufeixuan;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.github.yufeixuan.impl.ColumnType;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+
+import org.junit.Test;
+
+/**
+ * 混合类型的列的类型推断、比较和key
+ */
+public class ColumnTypeTest
+{
+    private static ColumnType of(final Object ... values)
+    {
+        return ColumnType.of(Arrays.asList(values));
+    }
+
+    @Test
+    public void typeOfMixedColumns()
+    {
+        assertEquals(ColumnType.EMPTY, of(null, null));
+        assertEquals(ColumnType.INTEGER, of(1, null, 2));
+        assertEquals(ColumnType.LONG, of(1, 2L, (short) 3));
+        assertEquals(ColumnType.DOUBLE, of(1, 2L, 3.5f));
+        assertEquals(ColumnType.DECIMAL, of(1, 2.5, BigInteger.ONE));
+        assertEquals(ColumnType.STRING, of("a", null, "b"));
+        assertEquals(ColumnType.COMPARABLE, of(new Date(0), new Date(1)));
+        assertEquals(ColumnType.OBJECT, of(true, new Date(0)));
+        assertEquals(ColumnType.OBJECT, of(1, "a"));
+        assertEquals(ColumnType.LONG, ColumnType.of(Arrays.asList(1, 2), Arrays.asList(3L)));
+    }
+
+    @Test
+    public void unionIsSymmetric()
+    {
+        for (final ColumnType a : ColumnType.values()) {
+            assertEquals(a, ColumnType.union(a, ColumnType.EMPTY));
+            assertEquals(a, ColumnType.union(a, a));
+            for (final ColumnType b : ColumnType.values()) {
+                assertEquals(ColumnType.union(a, b), ColumnType.union(b, a));
+            }
+        }
+        assertEquals(ColumnType.LONG, ColumnType.union(ColumnType.INTEGER, ColumnType.LONG));
+        assertEquals(ColumnType.DOUBLE, ColumnType.union(ColumnType.LONG, ColumnType.DOUBLE));
+        assertEquals(ColumnType.DECIMAL, ColumnType.union(ColumnType.DOUBLE, ColumnType.DECIMAL));
+        assertEquals(ColumnType.OBJECT, ColumnType.union(ColumnType.INTEGER, ColumnType.STRING));
+        assertEquals(ColumnType.OBJECT, ColumnType.union(ColumnType.COMPARABLE, ColumnType.STRING));
+    }
+
+    @Test
+    public void compareMixedNumbers()
+    {
+        final Comparator<Object> longs = of(1, 2L).comparator();
+        assertTrue(longs.compare(1, 2L) < 0);
+        assertEquals(0, longs.compare(2, 2L));
+        // 按long比较，不会因为转为double而丢失精度
+        assertTrue(longs.compare(Long.MAX_VALUE - 1, Long.MAX_VALUE) < 0);
+
+        final Comparator<Object> doubles = of(1, 1.5).comparator();
+        assertTrue(doubles.compare(2, 1.5) > 0);
+        assertEquals(0, doubles.compare(1, 1.0));
+
+        final Comparator<Object> decimals = of(1L, new BigDecimal("1.10")).comparator();
+        assertTrue(decimals.compare(1L, new BigDecimal("1.10")) < 0);
+        assertEquals(0, decimals.compare(new BigDecimal("1.10"), new BigDecimal("1.1")));
+    }
+
+    @Test
+    public void nullsFirst()
+    {
+        for (final ColumnType type : ColumnType.values()) {
+            assertEquals(0, type.comparator().compare(null, null));
+        }
+        assertTrue(ColumnType.INTEGER.comparator().compare(null, 1) < 0);
+        assertTrue(ColumnType.STRING.comparator().compare("a", null) > 0);
+    }
+
+    @Test
+    public void objectsCompareByClassThenValue()
+    {
+        final Comparator<Object> objects = of(1, "a").comparator();
+        // java.lang.Integer排在java.lang.String前面
+        assertTrue(objects.compare(2, "a") < 0);
+        assertTrue(objects.compare("b", "a") > 0);
+        assertTrue(objects.compare(1, 2) < 0);
+    }
+
+    @Test
+    public void numericallyEqualValuesShareKey()
+    {
+        assertEquals(ColumnType.LONG.key(1), ColumnType.LONG.key(1L));
+        assertEquals(ColumnType.DOUBLE.key(1), ColumnType.DOUBLE.key(1.0));
+        assertEquals(ColumnType.DECIMAL.key(new BigDecimal("1.0")), ColumnType.DECIMAL.key(new BigDecimal("1.00")));
+        assertEquals(ColumnType.DECIMAL.key(BigDecimal.ZERO), ColumnType.DECIMAL.key(new BigDecimal("0.000")));
+        assertEquals(ColumnType.DECIMAL.key(2L), ColumnType.DECIMAL.key(new BigDecimal("2.0")));
+        assertNull(ColumnType.LONG.key(null));
+    }
+
+    @Test
+    public void toDouble()
+    {
+        assertEquals(1.5, ColumnType.STRING.toDouble("1.5"), 0d);
+        assertEquals(2d, ColumnType.LONG.toDouble(2), 0d);
+        assertTrue(Double.isNaN(ColumnType.INTEGER.toDouble(null)));
+    }
+}
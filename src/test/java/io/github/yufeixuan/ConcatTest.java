@@ -0,0 +1,98 @@
+package io.github.yufeixuan;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * 拼接结果与输入互不影响，两种方式的结果相同
+ */
+public class ConcatTest
+{
+    private static DataFrame<Object> left()
+    {
+        final DataFrame<Object> df = new DataFrame<>("a", "b");
+        df.append(Arrays.<Object>asList(1, "x"));
+        df.append(Arrays.<Object>asList(2, "y"));
+        return df;
+    }
+
+    private static DataFrame<Object> right()
+    {
+        final DataFrame<Object> df = new DataFrame<>("b", "c");
+        df.append(Arrays.<Object>asList("z", 3.0));
+        return df;
+    }
+
+    @SafeVarargs
+    private static List<DataFrame<Object>> frames(final DataFrame<Object> ... frames)
+    {
+        return Arrays.asList(frames);
+    }
+
+    @Test
+    public void columnsAreAlignedByName()
+    {
+        for (final boolean chunked : new boolean[] {false, true}) {
+            final DataFrame<Object> df = DataFrame.concat(frames(left(), new DataFrame<>("c"), right()), chunked);
+            assertEquals(Arrays.<Object>asList("a", "b", "c"), df.getColumns());
+            assertEquals(Arrays.<Object>asList(1, 2, null), df.columnView(0));
+            assertEquals(Arrays.<Object>asList("x", "y", "z"), df.columnView(1));
+            assertEquals(Arrays.<Object>asList(null, null, 3.0), df.columnView(2));
+        }
+    }
+
+    @Test
+    public void changingInputsDoesNotChangeResult()
+    {
+        for (final boolean chunked : new boolean[] {false, true}) {
+            final DataFrame<Object> left = left();
+            final List<Object> escaped = left.column(1);
+            final DataFrame<Object> right = right();
+            final DataFrame<Object> df = DataFrame.concat(frames(left, right), chunked);
+
+            left.set(0, "a", 10);
+            escaped.set(1, "w");
+            right.append(Arrays.<Object>asList("v", 4.0));
+            right.dropRow(Arrays.asList(0));
+            assertEquals(Arrays.<Object>asList(1, 2, null), df.columnView(0));
+            assertEquals(Arrays.<Object>asList("x", "y", "z"), df.columnView(1));
+            assertEquals(Arrays.<Object>asList(null, null, 3.0), df.columnView(2));
+        }
+    }
+
+    @Test
+    public void changingResultDoesNotChangeInputs()
+    {
+        for (final boolean chunked : new boolean[] {false, true}) {
+            final DataFrame<Object> left = left();
+            final DataFrame<Object> right = right();
+            final DataFrame<Object> df = DataFrame.concat(frames(left, right), chunked);
+
+            df.set(0, "a", 10);
+            df.set(2, "b", "w");
+            df.column(2).set(2, 5.0);
+            df.dropRow(Arrays.asList(1));
+            assertEquals(Arrays.<Object>asList(10, null), df.columnView(0));
+            assertEquals(Arrays.<Object>asList(1, 2), left.columnView(0));
+            assertEquals(Arrays.<Object>asList("x", "y"), left.columnView(1));
+            assertEquals(Arrays.<Object>asList("z"), right.columnView(0));
+            assertEquals(Arrays.<Object>asList(3.0), right.columnView(1));
+        }
+    }
+
+    @Test
+    public void sameFrameTwice()
+    {
+        for (final boolean chunked : new boolean[] {false, true}) {
+            final DataFrame<Object> left = left();
+            final DataFrame<Object> df = DataFrame.concat(frames(left, left), chunked);
+            df.set(0, "a", 10);
+            assertEquals(Arrays.<Object>asList(10, 2, 1, 2), df.columnView(0));
+            assertEquals(Arrays.<Object>asList(1, 2), left.columnView(0));
+        }
+    }
+}
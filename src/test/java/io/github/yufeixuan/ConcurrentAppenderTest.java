@@ -0,0 +1,148 @@
+package io.github.yufeixuan;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * 多个线程同时写入时读取到的数据
+ */
+public class ConcurrentAppenderTest
+{
+    private static final int THREADS = 4;
+    private static final int ROWS = 20000;
+
+    private static Thread producer(final ConcurrentAppender<Object> appender, final int id)
+    {
+        return new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < ROWS; i++) {
+                    appender.append(Arrays.<Object>asList(id, i, id * ROWS + i));
+                }
+                appender.flush();
+            }
+        });
+    }
+
+    private static void assertWholeRows(final FrozenDataFrame<Object> snapshot)
+    {
+        for (final List<Object> row : snapshot) {
+            assertEquals(row.get(2), (Integer) row.get(0) * ROWS + (Integer) row.get(1));
+        }
+    }
+
+    @Test
+    public void snapshotsContainWholeRows() throws InterruptedException
+    {
+        final ConcurrentAppender<Object> appender = new ConcurrentAppender<>(
+            Arrays.<Object>asList("id", "i", "value"), 64);
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            threads.add(producer(appender, t));
+        }
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+
+        int previous = 0;
+        boolean running = true;
+        while (running) {
+            running = false;
+            for (final Thread thread : threads) {
+                running |= thread.isAlive();
+            }
+            final FrozenDataFrame<Object> snapshot = appender.snapshot();
+            assertTrue("已发布的行数不会减少", snapshot.length() >= previous);
+            assertWholeRows(snapshot);
+            previous = snapshot.length();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        final DataFrame<Object> df = appender.toDataFrame();
+        assertEquals(THREADS * ROWS, appender.length());
+        assertEquals(THREADS * ROWS, df.length());
+        final Set<Object> values = new HashSet<>(df.columnView(2));
+        assertEquals(THREADS * ROWS, values.size());
+    }
+
+    @Test
+    public void finalCountMatchesAppendedRows() throws InterruptedException
+    {
+        final ConcurrentAppender<Object> appender = new ConcurrentAppender<>(
+            Arrays.<Object>asList("id", "i", "value"), 1000);
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int id = t;
+            // 写入的行数不是chunkSize的整数倍，也不调用flush
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1500 + id; i++) {
+                        appender.append(Arrays.<Object>asList(id, i, id * ROWS + i));
+                    }
+                }
+            }));
+        }
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(THREADS * 1000, appender.length());
+        appender.flushAll();
+        assertEquals(THREADS * 1500 + 6, appender.length());
+        assertWholeRows(appender.snapshot());
+    }
+
+    @Test
+    public void maxDelayPublishesIdleThreads() throws InterruptedException
+    {
+        final ConcurrentAppender<Object> appender = new ConcurrentAppender<>(
+            Arrays.<Object>asList("id", "i", "value"), 1000, 10, TimeUnit.MILLISECONDS);
+        final AtomicBoolean done = new AtomicBoolean();
+        final Thread idle = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 3; i++) {
+                    appender.append(Arrays.<Object>asList(0, i, i));
+                }
+                done.set(true);
+            }
+        });
+        idle.start();
+        idle.join();
+        assertTrue(done.get());
+
+        Thread.sleep(20);
+        assertEquals(3, appender.length());
+        assertEquals(Arrays.<Object>asList(0, 1, 2), appender.snapshot().column(1));
+    }
+
+    @Test
+    public void writingResultDoesNotChangePublishedData()
+    {
+        final ConcurrentAppender<Object> appender = new ConcurrentAppender<>("a");
+        appender.append(Arrays.<Object>asList(1));
+        appender.append(Arrays.<Object>asList(2));
+        appender.flush();
+
+        final DataFrame<Object> df = appender.toDataFrame();
+        df.set(0, 0, 10);
+        assertEquals(Arrays.<Object>asList(10, 2), df.columnView(0));
+        assertEquals(Arrays.<Object>asList(1, 2), appender.toDataFrame().columnView(0));
+    }
+}
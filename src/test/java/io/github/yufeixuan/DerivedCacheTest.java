@@ -0,0 +1,124 @@
+package io.github.yufeixuan;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.github.yufeixuan.impl.DerivedCache;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 派生数据缓存的命中和失效
+ */
+public class DerivedCacheTest
+{
+    @Before
+    public void enable()
+    {
+        DerivedCache.enable(1L << 20);
+    }
+
+    @After
+    public void disable()
+    {
+        DerivedCache.disable();
+    }
+
+    private static DataFrame<Object> frame()
+    {
+        final DataFrame<Object> df = new DataFrame<>("k", "v");
+        df.append(Arrays.<Object>asList(3, "c"));
+        df.append(Arrays.<Object>asList(1, "a"));
+        df.append(Arrays.<Object>asList(2, "b"));
+        return df;
+    }
+
+    private static List<Object> column(final DataFrame<Object> df, final int col)
+    {
+        return df.columnView(col);
+    }
+
+    @Test
+    public void unchangedColumnHitsCache()
+    {
+        final DataFrame<Object> df = frame();
+        df.sortBy("k");
+        final long hits = DerivedCache.get().hits();
+        assertEquals(Arrays.<Object>asList("a", "b", "c"), column(df.sortBy("k"), 1));
+        assertEquals(hits + 1, DerivedCache.get().hits());
+    }
+
+    @Test
+    public void writeInvalidatesEntry()
+    {
+        final DataFrame<Object> df = frame();
+        df.sortBy("k");
+        assertEquals(1, DerivedCache.get().size());
+
+        df.set(0, "k", 0);
+        assertEquals(0, DerivedCache.get().size());
+        assertEquals(Arrays.<Object>asList("c", "a", "b"), column(df.sortBy("k"), 1));
+
+        df.append(Arrays.<Object>asList(-1, "z"));
+        assertEquals(Arrays.<Object>asList("z", "c", "a", "b"), column(df.sortBy("k"), 1));
+
+        df.dropRow(Arrays.asList(0));
+        assertEquals(Arrays.<Object>asList("z", "a", "b"), column(df.sortBy("k"), 1));
+    }
+
+    @Test
+    public void externallyModifiedColumnIsNotCached()
+    {
+        final DataFrame<Object> df = frame();
+        df.sortBy("k");
+        df.column(0).set(0, 0);
+        assertEquals(0, DerivedCache.get().size());
+        assertEquals(Arrays.<Object>asList("c", "a", "b"), column(df.sortBy("k"), 1));
+        assertEquals(0, DerivedCache.get().size());
+    }
+
+    @Test
+    public void droppedColumnInvalidatesEntry()
+    {
+        final DataFrame<Object> df = frame();
+        df.sortBy("k");
+        df.drop("k");
+        assertEquals(0, DerivedCache.get().size());
+    }
+
+    @Test
+    public void cloneSharesCache()
+    {
+        final DataFrame<Object> df = frame();
+        df.sortBy("k");
+        final DataFrame<Object> copy = df.clone();
+        final long hits = DerivedCache.get().hits();
+        assertEquals(Arrays.<Object>asList("a", "b", "c"), column(copy.sortBy("k"), 1));
+        assertEquals(hits + 1, DerivedCache.get().hits());
+
+        // 修改副本不影响原对象的缓存
+        copy.set(0, "k", 0);
+        assertEquals(Arrays.<Object>asList("c", "a", "b"), column(copy.sortBy("k"), 1));
+        assertEquals(Arrays.<Object>asList("a", "b", "c"), column(df.sortBy("k"), 1));
+        assertTrue(DerivedCache.get().hits() >= hits + 2);
+    }
+
+    @Test
+    public void derivedColumnIsCopiedBeforeWrite()
+    {
+        final DataFrame<Object> df = new DataFrame<>("x");
+        df.append(Arrays.<Object>asList(2d));
+        df.append(Arrays.<Object>asList(3d));
+        final DataFrame<Object> copy = df.clone();
+        df.pow(2d, "x");
+        copy.pow(2d, "x");
+        df.set(0, "x", 0d);
+        assertEquals(Arrays.<Object>asList(0d, 8d), column(df, 0));
+        assertEquals(Arrays.<Object>asList(4d, 8d), column(copy, 0));
+    }
+}
@@ -0,0 +1,103 @@
+package io.github.yufeixuan;
+
+import static org.junit.Assert.assertEquals;
+
+import io.github.yufeixuan.DataFrame.Encoding;
+import io.github.yufeixuan.impl.EncodedColumn;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * 在压缩数据上计算的count、sum、min、max与解压后计算的结果相同
+ */
+public class EncodedColumnTest
+{
+    private static DataFrame<Object> frame(final List<Object> values)
+    {
+        final DataFrame<Object> df = new DataFrame<>("x");
+        for (final Object value : values) {
+            df.append(Arrays.asList(value));
+        }
+        return df;
+    }
+
+    private static void assertSameDescribe(final List<Object> values, final Encoding encoding)
+    {
+        final DataFrame<Object> encoded = frame(values).encode("x", encoding);
+        final List<Object> expected = frame(values).describe().row(0);
+        final List<Object> actual = encoded.describe().row(0);
+        assertEquals(expected.get(1), actual.get(1));
+        assertEquals((Double) expected.get(2), (Double) actual.get(2), 1e-9);
+        assertEquals((Double) expected.get(3), (Double) actual.get(3), 1e-9);
+        assertEquals(expected.get(4), actual.get(4));
+        assertEquals(expected.get(5), actual.get(5));
+    }
+
+    @Test
+    public void runLengthAggregatesRuns()
+    {
+        final EncodedColumn<Object> column = EncodedColumn.encode(
+            Arrays.<Object>asList(2d, 2d, null, 5d, 5d, 5d), Encoding.RLE);
+        assertEquals(5, column.count());
+        assertEquals(19d, column.sum(), 0d);
+        assertEquals(2d, column.min());
+        assertEquals(5d, column.max());
+    }
+
+    @Test
+    public void frameOfReferenceSkipsNulls()
+    {
+        final EncodedColumn<Integer> column = EncodedColumn.encode(
+            Arrays.asList(-3, null, 7, 1), Encoding.FOR);
+        assertEquals(3, column.count());
+        assertEquals(5d, column.sum(), 0d);
+        assertEquals(Integer.valueOf(-3), column.min());
+        assertEquals(Integer.valueOf(7), column.max());
+    }
+
+    @Test
+    public void deltaSumsDecodedValues()
+    {
+        final List<Long> values = new ArrayList<>();
+        long sum = 0;
+        for (long i = 0; i < 200; i++) {
+            values.add(i * i);
+            sum += i * i;
+        }
+        final EncodedColumn<Long> column = EncodedColumn.encode(values, Encoding.DELTA);
+        assertEquals(200, column.count());
+        assertEquals((double) sum, column.sum(), 0d);
+    }
+
+    @Test
+    public void describeMatchesPlainColumn()
+    {
+        final List<Object> ints = new ArrayList<>();
+        final List<Object> longs = new ArrayList<>();
+        final List<Object> runs = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            ints.add(i % 7 == 0 ? null : (i * 37) % 101 - 50);
+            longs.add((long) i * 3 + i / 10);
+            runs.add(i / 50 % 3 == 0 ? null : (double) (i / 50));
+        }
+        assertSameDescribe(ints, Encoding.FOR);
+        assertSameDescribe(longs, Encoding.DELTA);
+        assertSameDescribe(runs, Encoding.RLE);
+    }
+
+    @Test
+    public void describeSkipsNaNInRuns()
+    {
+        assertSameDescribe(Arrays.<Object>asList(1d, 1d, Double.NaN, Double.NaN, 4d), Encoding.RLE);
+    }
+
+    @Test
+    public void describeSkipsEncodedStrings()
+    {
+        assertEquals(0, frame(Arrays.<Object>asList("a", "a", "b")).encode("x", Encoding.RLE).describe().length());
+    }
+}
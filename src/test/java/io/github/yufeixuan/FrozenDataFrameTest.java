@@ -0,0 +1,106 @@
+package io.github.yufeixuan;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * 快照与原来的DataFrame互不影响
+ */
+public class FrozenDataFrameTest
+{
+    private static DataFrame<Object> frame()
+    {
+        final DataFrame<Object> df = new DataFrame<>("k", "v");
+        df.append(Arrays.<Object>asList(1, "a"));
+        df.append(Arrays.<Object>asList(2, "b"));
+        df.append(Arrays.<Object>asList(3, "c"));
+        return df;
+    }
+
+    private static List<Object> column(final FrozenDataFrame<Object> frozen, final int col)
+    {
+        return frozen.column(col);
+    }
+
+    @Test
+    public void setAfterFreeze()
+    {
+        final DataFrame<Object> df = frame();
+        final FrozenDataFrame<Object> frozen = df.freeze();
+        df.set(0, "v", "x");
+        assertEquals("x", df.get(0, "v"));
+        assertEquals(Arrays.<Object>asList("a", "b", "c"), column(frozen, 1));
+    }
+
+    @Test
+    public void appendAfterFreeze()
+    {
+        final DataFrame<Object> df = frame();
+        final FrozenDataFrame<Object> frozen = df.freeze();
+        df.append(Arrays.<Object>asList(4, "d"));
+        assertEquals(4, df.length());
+        assertEquals(3, frozen.length());
+        assertEquals(Arrays.<Object>asList(1, 2, 3), column(frozen, 0));
+    }
+
+    @Test
+    public void dropRowAfterFreeze()
+    {
+        final DataFrame<Object> df = frame();
+        final FrozenDataFrame<Object> frozen = df.freeze();
+        df.dropRow(Arrays.asList(0));
+        assertEquals(Arrays.<Object>asList("b", "c"), df.columnView(1));
+        assertEquals(Arrays.<Object>asList("a", "b", "c"), column(frozen, 1));
+    }
+
+    @Test
+    public void escapedColumnIsCopiedIntoSnapshot()
+    {
+        final DataFrame<Object> df = frame();
+        final List<Object> escaped = df.column(1);
+        final FrozenDataFrame<Object> frozen = df.freeze();
+        escaped.set(0, "x");
+        assertEquals("x", df.get(0, "v"));
+        assertEquals(Arrays.<Object>asList("a", "b", "c"), column(frozen, 1));
+    }
+
+    @Test
+    public void columnTakenAfterFreezeIsCopied()
+    {
+        final DataFrame<Object> df = frame();
+        final FrozenDataFrame<Object> frozen = df.freeze();
+        df.column(1).set(0, "x");
+        assertEquals("x", df.get(0, "v"));
+        assertEquals(Arrays.<Object>asList("a", "b", "c"), column(frozen, 1));
+    }
+
+    @Test
+    public void frozenUpdatesReturnNewSnapshots()
+    {
+        final FrozenDataFrame<Object> frozen = frame().freeze();
+        final FrozenDataFrame<Object> updated = frozen.set(1, "v", "x")
+            .append(Arrays.<Object>asList(4, "d"))
+            .dropRow(Arrays.asList(0));
+        assertEquals(Arrays.<Object>asList("x", "c", "d"), column(updated, 1));
+        assertEquals(Arrays.<Object>asList("a", "b", "c"), column(frozen, 1));
+    }
+
+    @Test
+    public void thawAndCloneDoNotWriteThrough()
+    {
+        final DataFrame<Object> df = frame();
+        final FrozenDataFrame<Object> frozen = df.freeze();
+        final DataFrame<Object> thawed = frozen.thaw();
+        final DataFrame<Object> clone = df.clone();
+        thawed.set(0, "k", 10);
+        clone.set(1, "k", 20);
+        assertEquals(Arrays.<Object>asList(10, 2, 3), thawed.columnView(0));
+        assertEquals(Arrays.<Object>asList(1, 20, 3), clone.columnView(0));
+        assertEquals(Arrays.<Object>asList(1, 2, 3), df.columnView(0));
+        assertEquals(Arrays.<Object>asList(1, 2, 3), column(frozen, 0));
+    }
+}
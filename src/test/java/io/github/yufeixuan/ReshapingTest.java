@@ -0,0 +1,77 @@
+package io.github.yufeixuan;
+
+import static org.junit.Assert.assertEquals;
+
+import io.github.yufeixuan.DataFrame.Aggregation;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * pivot和melt的结果
+ */
+public class ReshapingTest
+{
+    private static DataFrame<Object> sales()
+    {
+        final DataFrame<Object> df = new DataFrame<>("day", "item", "qty");
+        df.append(Arrays.<Object>asList(1, "a", 2));
+        df.append(Arrays.<Object>asList(1, "b", 3));
+        df.append(Arrays.<Object>asList(2, "a", null));
+        df.append(Arrays.<Object>asList(1, "a", 4));
+        df.append(Arrays.<Object>asList(3L, "b", 5));
+        df.append(Arrays.<Object>asList(2L, "a", 6));
+        return df;
+    }
+
+    @Test
+    public void pivotAggregatesCells()
+    {
+        final DataFrame<Object> sum = sales().pivot("day", "item", "qty", Aggregation.SUM);
+        assertEquals(Arrays.<Object>asList("day", "a", "b"), sum.getColumns());
+        // Long的2与Integer的2在同一行
+        assertEquals(Arrays.<Object>asList(1, 2, 3L), sum.columnView(0));
+        assertEquals(Arrays.<Object>asList(6d, 6d, null), sum.columnView(1));
+        assertEquals(Arrays.<Object>asList(3d, null, 5d), sum.columnView(2));
+
+        final DataFrame<Object> first = sales().pivot("day", "item", "qty", Aggregation.FIRST);
+        assertEquals(Arrays.<Object>asList(2, 6, null), first.columnView(1));
+        final DataFrame<Object> max = sales().pivot("day", "item", "qty", Aggregation.MAX);
+        assertEquals(Arrays.<Object>asList(4, 6, null), max.columnView(1));
+        final DataFrame<Object> mean = sales().pivot("day", "item", "qty", Aggregation.MEAN);
+        assertEquals(Arrays.<Object>asList(3d, 6d, null), mean.columnView(1));
+    }
+
+    @Test
+    public void countDistinguishesMissingCells()
+    {
+        final DataFrame<Object> df = new DataFrame<>("day", "item", "qty");
+        df.append(Arrays.<Object>asList(1, "a", null));
+        df.append(Arrays.<Object>asList(2, "b", 1));
+        final DataFrame<Object> count = df.pivot("day", "item", "qty", Aggregation.COUNT);
+        assertEquals(Arrays.<Object>asList(0, null), count.columnView(1));
+        assertEquals(Arrays.<Object>asList(null, 1), count.columnView(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pivotValueEqualToIndexNameIsRejected()
+    {
+        final DataFrame<Object> df = new DataFrame<>("day", "item", "qty");
+        df.append(Arrays.<Object>asList(1, "day", 2));
+        df.pivot("day", "item", "qty", Aggregation.SUM);
+    }
+
+    @Test
+    public void meltRepeatsIdColumns()
+    {
+        final DataFrame<Object> df = new DataFrame<>("id", "x", "y");
+        df.append(Arrays.<Object>asList(1, 10, 20));
+        df.append(Arrays.<Object>asList(2, 11, 21));
+        final DataFrame<Object> melted = df.melt(Arrays.<Object>asList("id"), Arrays.<Object>asList());
+        assertEquals(Arrays.<Object>asList("id", "variable", "value"), melted.getColumns());
+        assertEquals(Arrays.<Object>asList(1, 2, 1, 2), melted.columnView(0));
+        assertEquals(Arrays.<Object>asList("x", "x", "y", "y"), melted.columnView(1));
+        assertEquals(Arrays.<Object>asList(10, 11, 20, 21), melted.columnView(2));
+    }
+}
@@ -0,0 +1,121 @@
+package io.github.yufeixuan;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.github.yufeixuan.DataFrame.QuantileMethod;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * describe和分位数的计算结果
+ */
+public class StatisticsTest
+{
+    private static DataFrame<Object> column(final List<?> values)
+    {
+        final DataFrame<Object> df = new DataFrame<>("x");
+        for (final Object value : values) {
+            df.append(Arrays.asList(value));
+        }
+        return df;
+    }
+
+    @Test
+    public void exactQuantileInterpolates()
+    {
+        final DataFrame<Object> df = column(Arrays.asList(4, null, 1, Double.NaN, 3, 2));
+        assertEquals(Arrays.asList(1d, 1.75, 2.5, 4d), df.quantile("x", 0, 0.25, 0.5, 1));
+        // 结果按参数的顺序返回
+        assertEquals(Arrays.asList(4d, 1d), df.quantile("x", 1, 0));
+    }
+
+    @Test
+    public void emptyColumnGivesNaN()
+    {
+        for (final QuantileMethod method : QuantileMethod.values()) {
+            final List<Double> result = column(Arrays.asList(null, Double.NaN)).quantile("x", method, 0.5);
+            assertTrue(Double.isNaN(result.get(0)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void quantileOutOfRange()
+    {
+        column(Arrays.asList(1, 2)).quantile("x", 1.5);
+    }
+
+    @Test
+    public void sketchWithinRankError()
+    {
+        final int n = 200000;
+        final List<Integer> values = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            values.add(i);
+        }
+        Collections.shuffle(values, new Random(7));
+        final DataFrame<Object> df = column(values);
+
+        final double[] qs = {0, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 1};
+        final List<Double> exact = df.quantile("x", qs);
+        final List<Double> sketch = df.quantile("x", QuantileMethod.SKETCH, qs);
+        for (int i = 0; i < qs.length; i++) {
+            // 值为0到n-1，值本身就是它的秩，默认k的秩误差约为1%
+            assertEquals(qs[i] * (n - 1), exact.get(i), 1e-9);
+            assertEquals("q=" + qs[i], exact.get(i), sketch.get(i), 0.01 * n);
+        }
+        // 最小值和最大值精确记录
+        assertEquals(0d, sketch.get(0), 0d);
+        assertEquals(n - 1d, sketch.get(qs.length - 1), 0d);
+    }
+
+    @Test
+    public void describeSkipsNullNaNAndStrings()
+    {
+        final DataFrame<Object> df = new DataFrame<>("a", "b", "c", "d");
+        df.append(Arrays.<Object>asList(1, "x", null, 5L));
+        df.append(Arrays.<Object>asList(null, "y", null, null));
+        df.append(Arrays.<Object>asList(3.0, "z", null, null));
+        df.append(Arrays.<Object>asList(Double.NaN, "w", null, null));
+
+        final DataFrame<Object> describe = df.describe();
+        assertEquals(2, describe.length());
+        assertEquals(Arrays.<Object>asList("a", 2, 2d, Math.sqrt(2), 1, 3.0), describe.row(0));
+        // 只有一个值时没有样本标准差
+        assertEquals(Arrays.<Object>asList("d", 1, 5d), describe.row(1).subList(0, 3));
+        assertNull(describe.get(1, "std"));
+    }
+
+    @Test
+    public void describeMatchesTwoPassOnLargeColumn()
+    {
+        final int n = 300000;
+        final Random random = new Random(3);
+        final List<Double> values = new ArrayList<>(n);
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            final double value = 1e6 + random.nextGaussian();
+            values.add(value);
+            sum += value;
+        }
+        final double mean = sum / n;
+        double m2 = 0;
+        for (final double value : values) {
+            m2 += (value - mean) * (value - mean);
+        }
+
+        final List<Object> row = column(values).describe().row(0);
+        assertEquals(n, row.get(1));
+        assertEquals(mean, (Double) row.get(2), 1e-6);
+        assertEquals(Math.sqrt(m2 / (n - 1)), (Double) row.get(3), 1e-6);
+        assertEquals(Collections.min(values), row.get(4));
+        assertEquals(Collections.max(values), row.get(5));
+    }
+}
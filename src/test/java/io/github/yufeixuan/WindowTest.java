@@ -0,0 +1,84 @@
+package io.github.yufeixuan;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * 滑动窗口的计算结果
+ */
+public class WindowTest
+{
+    private static DataFrame<Object> frame(final Object ... values)
+    {
+        final DataFrame<Object> df = new DataFrame<>("g", "v");
+        for (int i = 0; i < values.length; i++) {
+            df.append(Arrays.asList(i % 2 == 0 ? "a" : "b", values[i]));
+        }
+        return df;
+    }
+
+    private static List<Object> column(final DataFrame<Object> df)
+    {
+        return df.getBlocks().get(1);
+    }
+
+    @Test
+    public void sumAndMeanSlide()
+    {
+        assertEquals(Arrays.<Object>asList(null, null, 6d, 9d, 12d), column(frame(1, 2, 3, 4, 5).rolling(3).sum("v")));
+        assertEquals(Arrays.<Object>asList(null, 1.5, 2.5, 3.5), column(frame(1, 2, 3, 4).rolling(2).mean("v")));
+    }
+
+    @Test
+    public void nullInWindowGivesNull()
+    {
+        assertEquals(Arrays.<Object>asList(null, null, null, 7d), column(frame(1, null, 3, 4).rolling(2).sum("v")));
+    }
+
+    @Test
+    public void minAndMaxSlide()
+    {
+        assertEquals(Arrays.<Object>asList(null, null, 1d, 1d, 2d), column(frame(3, 1, 4, 2, 5).rolling(3).min("v")));
+        assertEquals(Arrays.<Object>asList(null, null, 4d, 4d, 5d), column(frame(3, 1, 4, 2, 5).rolling(3).max("v")));
+    }
+
+    @Test
+    public void nonFiniteValuesOnlyAffectTheirWindows()
+    {
+        final double inf = Double.POSITIVE_INFINITY;
+        assertEquals(Arrays.<Object>asList(null, inf, 5d, 7d), column(frame(inf, 1, 4, 3).rolling(2).sum("v")));
+        assertEquals(Arrays.<Object>asList(null, Double.NaN, 5d, 7d), column(frame(Double.NaN, 1, 4, 3).rolling(2).sum("v")));
+        assertEquals(Arrays.<Object>asList(null, Double.NaN, -inf), column(frame(inf, -inf, 4).rolling(2).sum("v")));
+        assertEquals(Arrays.<Object>asList(null, Double.NaN, 1d), column(frame(Double.NaN, 1, 4).rolling(2).min("v")));
+    }
+
+    @Test
+    public void largeValuesDoNotCancelSmallOnes()
+    {
+        assertEquals(Arrays.<Object>asList(null, 1e20, 2d, 2d), column(frame(1e20, 1, 1, 1).rolling(2).sum("v")));
+    }
+
+    @Test
+    public void partitionsAreIndependent()
+    {
+        final DataFrame<Object> df = frame(1, 10, 2, 20, 3, 30);
+        df.partitionBy("g").rolling(2).sum("v");
+        assertEquals(Arrays.<Object>asList(null, null, 3d, 30d, 5d, 50d), column(df));
+    }
+
+    @Test
+    public void numericallyEqualKeysShareAPartition()
+    {
+        final DataFrame<Object> df = new DataFrame<>("g", "v");
+        df.append(Arrays.<Object>asList(1, 1));
+        df.append(Arrays.<Object>asList(1L, 2));
+        df.append(Arrays.<Object>asList(2, 10));
+        df.append(Arrays.<Object>asList(1.0, 3));
+        df.partitionBy("g").cumsum("v");
+        assertEquals(Arrays.<Object>asList(1d, 3d, 10d, 6d), column(df));
+    }
+}